@@ -1,6 +1,9 @@
 package com.smylay.hr.model;
 
-import java.io.Serializable;
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
 import java.util.Date;
 import javax.persistence.Basic;
 import javax.persistence.Column;
@@ -8,6 +11,7 @@ import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Index;
 import javax.persistence.JoinColumn;
 import javax.persistence.ManyToOne;
 import javax.persistence.NamedQueries;
@@ -22,7 +26,10 @@ import javax.xml.bind.annotation.XmlRootElement;
 // This is an entity class automatically generated by java that allows the system to access and interact with my database table Absence.
 
 @Entity
-@Table(name = "absence")
+@Table(name = "absence", indexes = {
+    @Index(name = "idx_absence_dates", columnList = "startdate, enddate")
+    , @Index(name = "idx_absence_employee_reason_start", columnList = "employeeid, reasonid, startdate")
+    , @Index(name = "idx_absence_approved_start", columnList = "approved, startdate, absenceid")})
 @XmlRootElement
 @NamedQueries({
     @NamedQuery(name = "Absence.findAll", query = "SELECT a FROM Absence a")
@@ -31,8 +38,18 @@ import javax.xml.bind.annotation.XmlRootElement;
     , @NamedQuery(name = "Absence.findByEnddate", query = "SELECT a FROM Absence a WHERE a.enddate = :enddate")
     , @NamedQuery(name = "Absence.findByReasonother", query = "SELECT a FROM Absence a WHERE a.reasonother = :reasonother")
     , @NamedQuery(name = "Absence.findByNumdays", query = "SELECT a FROM Absence a WHERE a.numdays = :numdays")
-    , @NamedQuery(name = "Absence.findByApproved", query = "SELECT a FROM Absence a WHERE a.approved = :approved")})
-public class Absence implements Serializable {
+    , @NamedQuery(name = "Absence.findByApproved", query = "SELECT a FROM Absence a WHERE a.approved = :approved")
+    , @NamedQuery(name = "Absence.findOverlapping", query = "SELECT NEW com.smylay.hr.AbsenceView(a.absenceid, e.employeeid, e.roleid.roleid, e.name, r.reasonid, r.name, a.startdate, a.enddate, a.numdays, a.approved) FROM Absence a JOIN a.employeeid e JOIN a.reasonid r WHERE a.startdate < :to AND a.enddate >= :from ORDER BY a.startdate")
+    , @NamedQuery(name = "Absence.findAllViews", query = "SELECT NEW com.smylay.hr.AbsenceView(a.absenceid, e.employeeid, e.roleid.roleid, e.name, r.reasonid, r.name, a.startdate, a.enddate, a.numdays, a.approved) FROM Absence a JOIN a.employeeid e JOIN a.reasonid r")
+    , @NamedQuery(name = "Absence.findByAbsenceidWithDetails", query = "SELECT a FROM Absence a JOIN FETCH a.employeeid e JOIN FETCH e.roleid JOIN FETCH a.reasonid WHERE a.absenceid = :absenceid")
+    , @NamedQuery(name = "Absence.findIntervalsForEmployee", query = "SELECT a.startdate, a.enddate, a.numdays FROM Absence a WHERE a.employeeid.employeeid = :employeeid AND a.reasonid.reasonid = :reasonid AND a.startdate < :to AND a.enddate >= :from")
+    , @NamedQuery(name = "Absence.findPendingViews", query = "SELECT NEW com.smylay.hr.AbsenceView(a.absenceid, e.employeeid, e.roleid.roleid, e.name, r.reasonid, r.name, a.startdate, a.enddate, a.numdays, a.approved) FROM Absence a JOIN a.employeeid e JOIN a.reasonid r WHERE a.approved = false AND r.reasonid <> :sicknessid ORDER BY a.startdate, a.absenceid")
+    , @NamedQuery(name = "Absence.findPendingViewsAfter", query = "SELECT NEW com.smylay.hr.AbsenceView(a.absenceid, e.employeeid, e.roleid.roleid, e.name, r.reasonid, r.name, a.startdate, a.enddate, a.numdays, a.approved) FROM Absence a JOIN a.employeeid e JOIN a.reasonid r WHERE a.approved = false AND r.reasonid <> :sicknessid AND a.startdate >= :startdate AND (a.startdate > :startdate OR a.absenceid > :absenceid) ORDER BY a.startdate, a.absenceid")
+    , @NamedQuery(name = "Absence.findPendingIdsIn", query = "SELECT a.absenceid FROM Absence a WHERE a.absenceid IN :ids AND a.approved = false AND a.reasonid.reasonid <> :sicknessid")
+    , @NamedQuery(name = "Absence.findPendingByIdsWithDetails", query = "SELECT a FROM Absence a JOIN FETCH a.employeeid e JOIN FETCH e.roleid JOIN FETCH a.reasonid r WHERE a.absenceid IN :ids AND a.approved = false AND r.reasonid <> :sicknessid")
+    , @NamedQuery(name = "Absence.approveByIds", query = "UPDATE Absence a SET a.approved = true WHERE a.absenceid IN :ids AND a.approved = false")
+    , @NamedQuery(name = "Absence.deleteByIds", query = "DELETE FROM Absence a WHERE a.absenceid IN :ids AND a.approved = false")})
+public class Absence implements Externalizable {
 
     private static final long serialVersionUID = 1L;
     @Id
@@ -170,5 +187,46 @@ public class Absence implements Serializable {
     public String toString() {
         return "com.smylay.hr.model.Absence[ absenceid=" + absenceid + " ]";
     }
+
+    /**
+     * Writes the compact form of the absence used when a session is passivated or replicated. The employee is written
+     * in its own compact form and the reason as just its id and name.
+     *
+     * @param out the stream to write to.
+     */
+    @Override
+    public void writeExternal(ObjectOutput out) throws IOException {
+        EntityStreams.writeInteger(out, absenceid);
+        EntityStreams.writeDate(out, startdate);
+        EntityStreams.writeDate(out, enddate);
+        EntityStreams.writeString(out, reasonother);
+        out.writeFloat(numdays);
+        out.writeBoolean(approved);
+        out.writeObject(employeeid);
+        out.writeBoolean(reasonid != null);
+        if (reasonid != null) {
+            EntityStreams.writeInteger(out, reasonid.getReasonid());
+            EntityStreams.writeString(out, reasonid.getName());
+        }
+    }
+
+    /**
+     * Reads the compact form written by writeExternal.
+     *
+     * @param in the stream to read from.
+     */
+    @Override
+    public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException {
+        absenceid = EntityStreams.readInteger(in);
+        startdate = EntityStreams.readDate(in);
+        enddate = EntityStreams.readDate(in);
+        reasonother = EntityStreams.readString(in);
+        numdays = in.readFloat();
+        approved = in.readBoolean();
+        employeeid = (Employee) in.readObject();
+        if (in.readBoolean()) {
+            reasonid = new Reason(EntityStreams.readInteger(in), EntityStreams.readString(in));
+        }
+    }
     
 }
@@ -0,0 +1,35 @@
+package com.smylay.hr;
+
+import com.smylay.hr.model.Absence;
+
+// This event is fired by DBFacade whenever an absence is saved or deleted.
+// Beans that keep their own copy of the absences observe it once the change has been committed so they can update
+// just that absence instead of loading everything again.
+public class AbsenceChangedEvent {
+
+    private final Absence absence;
+    private final boolean deleted;
+
+    /**
+     * @param absence the absence that was saved or deleted.
+     * @param deleted true if the absence was deleted, false if it was saved.
+     */
+    public AbsenceChangedEvent(Absence absence, boolean deleted) {
+        this.absence = absence;
+        this.deleted = deleted;
+    }
+
+    /**
+     * @return the absence that was saved or deleted.
+     */
+    public Absence getAbsence() {
+        return absence;
+    }
+
+    /**
+     * @return true if the absence was deleted, false if it was saved.
+     */
+    public boolean isDeleted() {
+        return deleted;
+    }
+}
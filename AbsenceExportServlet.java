@@ -0,0 +1,88 @@
+package com.smylay.hr;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Date;
+import javax.inject.Inject;
+import javax.servlet.ServletException;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.jboss.logging.Logger;
+import org.joda.time.LocalDate;
+
+// The absence export servlet lets HR download absences as a CSV or Excel file, e.g. for the year end.
+// The rows are written to the response as they are read from the database, so the download starts straight away and
+// the server never holds the whole export in memory.
+// Parameters (all optional): from and to (yyyy-MM-dd, default the current year), reasonid, employeeid, format (csv or
+// xlsx, default csv). Only managers and superusers can export.
+// "WebServlet" sets the address the export is downloaded from.
+@WebServlet("/export/absences")
+public class AbsenceExportServlet extends HttpServlet {
+
+    private static final long serialVersionUID = 1L;
+
+    // Here I inject different beans. DBFacade handles database interaction. LoginManager handles the logged in user.
+    // Logger enables you to output messages to the screen.
+    @Inject
+    DBFacade dbFacade;
+    @Inject
+    LoginManager loginManager;
+    @Inject
+    Logger log;
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
+        if (!loginManager.getManager()) {
+            response.sendError(HttpServletResponse.SC_FORBIDDEN);
+            return;
+        }
+
+        Date from;
+        Date to;
+        Integer reasonId;
+        Integer employeeId;
+        try {
+            LocalDate startOfYear = new LocalDate().withDayOfYear(1);
+            from = dateParameter(request, "from", startOfYear);
+            // The end date is included in the export, so the period runs to the start of the following day.
+            to = new LocalDate(dateParameter(request, "to", startOfYear.plusYears(1).minusDays(1))).plusDays(1).toDate();
+            reasonId = intParameter(request, "reasonid");
+            employeeId = intParameter(request, "employeeid");
+        } catch (IllegalArgumentException e) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, e.getMessage());
+            return;
+        }
+
+        OutputStream out = response.getOutputStream();
+        ExportWriter writer = ExportWriter.forFormat(request.getParameter("format"), out);
+        response.setContentType(writer.getContentType());
+        response.setHeader("Content-Disposition", "attachment; filename=\"absences." + writer.getExtension() + "\"");
+
+        // The header row is sent straight away so the download starts before the query has finished.
+        long started = System.currentTimeMillis();
+        writer.writeRow("Absence ID", "Employee", "Reason", "Start date", "End date", "Days", "Approved", "Details");
+        writer.flush();
+        response.flushBuffer();
+        int count = dbFacade.exportAbsences(from, to, reasonId, employeeId, writer);
+        writer.finish();
+        log.info("Exported " + count + " absences in " + (System.currentTimeMillis() - started) + "ms");
+    }
+
+    private static Date dateParameter(HttpServletRequest request, String name, LocalDate defaultValue) {
+        String value = request.getParameter(name);
+        if (value == null || value.trim().isEmpty()) {
+            return defaultValue.toDate();
+        }
+        return LocalDate.parse(value.trim()).toDate();
+    }
+
+    private static Integer intParameter(HttpServletRequest request, String name) {
+        String value = request.getParameter(name);
+        if (value == null || value.trim().isEmpty()) {
+            return null;
+        }
+        return Integer.valueOf(value.trim());
+    }
+}
@@ -0,0 +1,340 @@
+package com.smylay.hr;
+
+import com.smylay.hr.model.Absence;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.event.Observes;
+import javax.enterprise.event.TransactionPhase;
+import javax.inject.Inject;
+import javax.inject.Named;
+import org.jboss.logging.Logger;
+
+// The absence interval index keeps every approved and requested absence in memory, grouped by the role of the
+// employee, so the approval page can show who else in the team is off without going to the database.
+// An employee counts as off on any day covered by one of their absences, whether it has been approved or only
+// requested. The approval page and the staffing heat map both count from here, so they always agree.
+// Each role has an interval tree: a treap (a binary search tree kept balanced by giving each node a random priority)
+// ordered by start day, where each node also knows the latest end day below it. A search can skip any part of the tree
+// that ends before the period or starts after it, so it takes logarithmic time plus the number of absences found.
+// The nodes are never changed once published. Adding or removing an absence copies only the nodes on the path down to
+// it, which is logarithmic, and swaps in the new root for that role, so readers never need a lock and a bulk approval
+// that changes many absences does not rebuild anything.
+// "Named" enables beans to be injected into each other which allows them to communicate between each other.
+// "ApplicationScoped" details how long the state is saved. in this case for the duration that the application is running.
+@Named
+@ApplicationScoped
+public class AbsenceIntervalIndex implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    // Here I inject different beans. DBFacade handles database interaction. WorkdayCalendar counts working days.
+    // Logger enables you to output messages to the screen.
+    @Inject
+    DBFacade dbFacade;
+    @Inject
+    WorkdayCalendar workdayCalendar;
+    @Inject
+    Logger log;
+
+    // The current trees. They are only replaced as a whole when they are invalidated.
+    private transient volatile Snapshot snapshot;
+
+    /**
+     * This method returns the absences of employees with a role that overlap a period.
+     *
+     * @param roleid the id of the role.
+     * @param firstDay the first day of the period as an epoch day.
+     * @param lastDay the last day of the period as an epoch day.
+     *
+     * @return the absences, ordered by start day.
+     */
+    public List<AbsenceView> getOverlapping(int roleid, int firstDay, int lastDay) {
+        List<AbsenceView> found = new ArrayList<AbsenceView>();
+        collect(getSnapshot().byRole.get(roleid), firstDay, lastDay, found);
+        return found;
+    }
+
+    /**
+     * This method works out, for each working day in a period, how many employees with a role are off and how many are
+     * still available.
+     *
+     * @param roleid the id of the role.
+     * @param firstDay the first day of the period as an epoch day.
+     * @param lastDay the last day of the period as an epoch day.
+     * @param headcount the number of employees with the role.
+     *
+     * @return one entry for each working day in the period.
+     */
+    public List<StaffingDay> getStaffing(int roleid, int firstDay, int lastDay, int headcount) {
+        int[] absent = countAbsent(roleid, firstDay, lastDay);
+        List<StaffingDay> days = new ArrayList<StaffingDay>();
+        for (int day = firstDay; day <= lastDay; day++) {
+            if (workdayCalendar.workingDaysBetween(day, day) == 0) {
+                continue;
+            }
+            int off = absent[day - firstDay];
+            days.add(new StaffingDay(day, off, Math.max(0, headcount - off)));
+        }
+        return days;
+    }
+
+    /**
+     * This method works out how many employees with a role are off on each day of a period. Each absence only touches
+     * the days it covers, so the time taken grows with the absences found rather than with the days times the absences.
+     *
+     * @param roleid the id of the role.
+     * @param firstDay the first day of the period as an epoch day.
+     * @param lastDay the last day of the period as an epoch day.
+     *
+     * @return the number of employees off on each day, where entry 0 is firstDay.
+     */
+    public int[] countAbsent(int roleid, int firstDay, int lastDay) {
+        Map<Integer, List<AbsenceView>> byEmployee = new HashMap<Integer, List<AbsenceView>>();
+        for (AbsenceView thisAbsence : getOverlapping(roleid, firstDay, lastDay)) {
+            List<AbsenceView> absences = byEmployee.get(thisAbsence.getEmployeeid());
+            if (absences == null) {
+                absences = new ArrayList<AbsenceView>();
+                byEmployee.put(thisAbsence.getEmployeeid(), absences);
+            }
+            absences.add(thisAbsence);
+        }
+        int[] counts = new int[lastDay - firstDay + 1];
+        // Each day remembers the last employee counted on it, so someone with two absences on the same day is only
+        // counted once.
+        int[] countedFor = new int[counts.length];
+        int employee = 0;
+        for (List<AbsenceView> absences : byEmployee.values()) {
+            employee++;
+            for (AbsenceView thisAbsence : absences) {
+                int last = Math.min(thisAbsence.getEndDay(), lastDay) - firstDay;
+                for (int i = Math.max(thisAbsence.getStartDay(), firstDay) - firstDay; i <= last; i++) {
+                    if (countedFor[i] != employee) {
+                        countedFor[i] = employee;
+                        counts[i]++;
+                    }
+                }
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * This method throws away the trees so they are built again from the database the next time they are needed.
+     *
+     * @param none
+     *
+     * @return none
+     */
+    public synchronized void invalidate() {
+        snapshot = null;
+    }
+
+    /**
+     * This method is called once an employee has been added or changed and the change committed to the database. The
+     * absences are grouped by the employee's role, so if the role changed the trees are built again when next needed.
+     *
+     * @param event the change that was made.
+     *
+     * @return none
+     */
+    public void onEmployeeChanged(@Observes(during = TransactionPhase.AFTER_SUCCESS) EmployeeChangedEvent event) {
+        if (event.isRoleChanged()) {
+            invalidate();
+        }
+    }
+
+    /**
+     * This method is called once an absence has been saved or deleted and the change committed to the database. The
+     * old version of the absence is taken out of its role's tree and the new version put in, which only copies the
+     * nodes on the way down to it.
+     *
+     * @param event the change that was made.
+     *
+     * @return none
+     */
+    public synchronized void onAbsenceChanged(@Observes(during = TransactionPhase.AFTER_SUCCESS) AbsenceChangedEvent event) {
+        Snapshot current = snapshot;
+        if (current == null) {
+            // Nothing has been built yet, the change will be included when it is.
+            return;
+        }
+        Absence absence = event.getAbsence();
+        AbsenceView old = current.byId.remove(absence.getAbsenceid());
+        AbsenceView view = event.isDeleted() ? null : AbsenceView.of(absence);
+        if (old != null && (view == null || old.getRoleid() != view.getRoleid())) {
+            current.setRoot(old.getRoleid(), remove(current.byRole.get(old.getRoleid()), old));
+            old = null;
+        }
+        if (view != null) {
+            // The old version is in the same tree, so it is swapped for the new one before the root is put back.
+            Node root = current.byRole.get(view.getRoleid());
+            if (old != null) {
+                root = remove(root, old);
+            }
+            current.byId.put(view.getAbsenceid(), view);
+            current.setRoot(view.getRoleid(), insert(root, view));
+        }
+    }
+
+    /**
+     * This method returns the current trees, building them from the database if needed.
+     *
+     * @param none
+     *
+     * @return the current trees.
+     */
+    private Snapshot getSnapshot() {
+        Snapshot current = snapshot;
+        if (current == null) {
+            synchronized (this) {
+                current = snapshot;
+                if (current == null) {
+                    current = load();
+                    snapshot = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * This method reads every absence from the database and builds a tree for each role.
+     *
+     * @param none
+     *
+     * @return the new trees.
+     */
+    private Snapshot load() {
+        long started = System.currentTimeMillis();
+        List<AbsenceView> absences = dbFacade.getAllAbsenceViews();
+        Snapshot loaded = new Snapshot();
+        for (AbsenceView thisAbsence : absences) {
+            loaded.byId.put(thisAbsence.getAbsenceid(), thisAbsence);
+            loaded.setRoot(thisAbsence.getRoleid(), insert(loaded.byRole.get(thisAbsence.getRoleid()), thisAbsence));
+        }
+        log.info("Absence interval index built from " + absences.size() + " absences in " + (System.currentTimeMillis() - started) + "ms");
+        return loaded;
+    }
+
+    // Adds the absences in a tree that overlap a period to a list, in order of start day.
+    private static void collect(Node node, int firstDay, int lastDay, List<AbsenceView> found) {
+        if (node == null || node.maxEnd < firstDay) {
+            // Everything in this part of the tree ends before the period.
+            return;
+        }
+        collect(node.left, firstDay, lastDay, found);
+        if (node.view.getStartDay() > lastDay) {
+            // This absence and everything after it starts after the period.
+            return;
+        }
+        if (node.view.getEndDay() >= firstDay) {
+            found.add(node.view);
+        }
+        collect(node.right, firstDay, lastDay, found);
+    }
+
+    // Returns a tree with an absence added. Only the nodes on the way down are copied; the new node is then rotated up
+    // past any node with a lower priority, which keeps the tree balanced.
+    private static Node insert(Node node, AbsenceView view) {
+        if (node == null) {
+            return new Node(view, null, null);
+        }
+        if (isBefore(view, node.view)) {
+            Node left = insert(node.left, view);
+            if (left.priority > node.priority) {
+                return new Node(left.view, left.left, new Node(node.view, left.right, node.right));
+            }
+            return new Node(node.view, left, node.right);
+        }
+        Node right = insert(node.right, view);
+        if (right.priority > node.priority) {
+            return new Node(right.view, new Node(node.view, node.left, right.left), right.right);
+        }
+        return new Node(node.view, node.left, right);
+    }
+
+    // Returns a tree with an absence taken out. Its two subtrees are joined in its place.
+    private static Node remove(Node node, AbsenceView view) {
+        if (node == null) {
+            return null;
+        }
+        if (node.view.getAbsenceid() == view.getAbsenceid()) {
+            return join(node.left, node.right);
+        }
+        if (isBefore(view, node.view)) {
+            return new Node(node.view, remove(node.left, view), node.right);
+        }
+        return new Node(node.view, node.left, remove(node.right, view));
+    }
+
+    // Joins two trees where everything in the first comes before everything in the second.
+    private static Node join(Node first, Node second) {
+        if (first == null) {
+            return second;
+        }
+        if (second == null) {
+            return first;
+        }
+        if (first.priority > second.priority) {
+            return new Node(first.view, first.left, join(first.right, second));
+        }
+        return new Node(second.view, join(first, second.left), second.right);
+    }
+
+    // The tree is ordered by start day, and by id for absences that start on the same day.
+    private static boolean isBefore(AbsenceView a, AbsenceView b) {
+        if (a.getStartDay() != b.getStartDay()) {
+            return a.getStartDay() < b.getStartDay();
+        }
+        return a.getAbsenceid() < b.getAbsenceid();
+    }
+
+    // The absences by id, so the old version of a changed absence can be found, and the root of the tree for each role.
+    // Both maps are only changed while holding this bean's lock.
+    private static class Snapshot {
+
+        private final Map<Integer, AbsenceView> byId = new ConcurrentHashMap<Integer, AbsenceView>();
+        private final Map<Integer, Node> byRole = new ConcurrentHashMap<Integer, Node>();
+
+        // A role whose last absence has been taken out has no tree.
+        void setRoot(int roleid, Node root) {
+            if (root == null) {
+                byRole.remove(roleid);
+            } else {
+                byRole.put(roleid, root);
+            }
+        }
+    }
+
+    // A node of a role's tree. maxEnd holds the latest end day of any absence in the node's subtree. The priority comes
+    // from the absence id, mixed so that ids given out in order still give a balanced tree.
+    private static class Node {
+
+        private final AbsenceView view;
+        private final Node left;
+        private final Node right;
+        private final int priority;
+        private final int maxEnd;
+
+        Node(AbsenceView view, Node left, Node right) {
+            this.view = view;
+            this.left = left;
+            this.right = right;
+            int mixed = view.getAbsenceid() * 0x9E3779B9;
+            this.priority = mixed ^ (mixed >>> 16);
+            int end = view.getEndDay();
+            if (left != null) {
+                end = Math.max(end, left.maxEnd);
+            }
+            if (right != null) {
+                end = Math.max(end, right.maxEnd);
+            }
+            this.maxEnd = end;
+        }
+    }
+}
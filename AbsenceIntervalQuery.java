@@ -0,0 +1,71 @@
+package com.smylay.hr;
+
+import java.io.Serializable;
+import java.util.Date;
+import java.util.List;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import javax.inject.Named;
+import org.joda.time.LocalDate;
+
+// The absence interval query works out how many absences an employee has had in a period and how many working days of
+// the period they cover. Absences are found with an overlap test (see DBFacade.getAbsenceIntervals), so an absence
+// that starts before the period, ends after it, or covers all of it is always counted. Only the working days of an
+// absence that fall inside the period are counted; an absence that is completely inside the period uses its stored
+// number of days.
+// "Named" enables beans to be injected into each other which allows them to communicate between each other.
+// "ApplicationScoped" details how long the state is saved. in this case for the duration that the application is running.
+@Named
+@ApplicationScoped
+public class AbsenceIntervalQuery implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    // Here I inject different beans. DBFacade handles database interaction. WorkdayCalendar counts working days.
+    @Inject
+    DBFacade dbFacade;
+    @Inject
+    WorkdayCalendar workdayCalendar;
+
+    /**
+     * This method returns the number of absences an employee has had for a reason in a period, and the number of
+     * working days of the period they covered.
+     *
+     * @param employeeid the id of the employee.
+     * @param reasonid the id of the reason for the absences.
+     * @param from the first day of the period.
+     * @param to the day after the last day of the period.
+     *
+     * @return the statistics for the period.
+     */
+    public AbsenceStatistics getStatistics(Integer employeeid, Integer reasonid, Date from, Date to) {
+        int firstDay = Utils.toEpochDay(from);
+        int lastDay = Utils.toEpochDay(to) - 1;
+        List<Object[]> rows = dbFacade.getAbsenceIntervals(employeeid, reasonid, from, to);
+        float days = 0;
+        for (Object[] row : rows) {
+            int startDay = Utils.toEpochDay((Date) row[0]);
+            int endDay = Utils.toEpochDay((Date) row[1]);
+            if (startDay >= firstDay && endDay <= lastDay) {
+                days += ((Number) row[2]).floatValue();
+            } else {
+                // Only part of the absence is in the period, so only the working days in the period are counted.
+                days += workdayCalendar.workingDaysBetween(Math.max(startDay, firstDay), Math.min(endDay, lastDay));
+            }
+        }
+        return new AbsenceStatistics(rows.size(), (int) days);
+    }
+
+    /**
+     * This method returns the statistics for a whole calendar year.
+     *
+     * @param employeeid the id of the employee.
+     * @param reasonid the id of the reason for the absences.
+     * @param year the year.
+     *
+     * @return the statistics for the year.
+     */
+    public AbsenceStatistics getStatisticsForYear(Integer employeeid, Integer reasonid, int year) {
+        return getStatistics(employeeid, reasonid, new LocalDate(year, 1, 1).toDate(), new LocalDate(year + 1, 1, 1).toDate());
+    }
+}
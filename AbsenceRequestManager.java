@@ -4,6 +4,7 @@ import com.smylay.hr.model.Absence;
 import com.smylay.hr.model.Reason;
 import java.io.IOException;
 import java.io.Serializable;
+import java.util.ArrayList;
 import javax.ejb.Stateful;
 import javax.enterprise.context.SessionScoped;
 import javax.inject.Named;
@@ -27,35 +28,57 @@ import org.primefaces.model.timeline.TimelineEvent;
 @SessionScoped
 @Named
 public class AbsenceRequestManager implements Serializable {
-// Here I inject different beans. DBFacade handles database interaction. LoginManager handles the logged in user. Logger enables you to output messages to the screen.
+// Here I inject different beans. DBFacade handles database interaction. LoginManager handles the logged in user.
+// WorkdayCalendar counts working days. ReferenceDataCache holds the reasons. MailSenderBean sends emails.
+// AbsenceStatisticsStore holds absence totals. AbsenceIntervalIndex finds who else is off at the same time.
+// RecipientResolver holds the managers' email addresses. Logger enables you to output messages to the screen.
 
     @Inject
     DBFacade dbFacade;
     @Inject
     LoginManager loginManager;
     @Inject
+    WorkdayCalendar workdayCalendar;
+    @Inject
+    ReferenceDataCache referenceDataCache;
+    @Inject
+    MailSenderBean mailSenderBean;
+    @Inject
+    AbsenceStatisticsStore absenceStatisticsStore;
+    @Inject
+    AbsenceIntervalIndex absenceIntervalIndex;
+    @Inject
+    StaffingHeatMap staffingHeatMap;
+    @Inject
+    RecipientResolver recipientResolver;
+    @Inject
     Logger log;
     private Absence newAbsence;
-    private Absence selectedAbsence;
+    // Only the id of the selected absence is kept in the session. The absence itself is loaded again when it is needed.
+    private Integer selectedAbsenceId;
+    private transient Absence selectedAbsence;
+    // The staffing of the selected absence's team, worked out once for each absence selected.
+    private transient List<AbsenceView> conflicts;
+    private transient List<StaffingDay> staffing;
 
-// init creates a new absence, sets the Employeeid to that of the logged in user, and sets its approved boolean to false.
+// init creates a new absence and sets its approved boolean to false. The employee is set when the absence is submitted.
 // "PostConstruct" means that this method runs straight after the construction of an instance of this class.
     @PostConstruct
     public void init() {
         newAbsence = new Absence();
-        newAbsence.setEmployeeid(loginManager.getLoggedInUser());
         newAbsence.setApproved(false);
     }
 
     /**
-     * This method accesses the database to retrieve a list of all possible reasons for absence. e.g. holiday.
+     * This method retrieves a list of all possible reasons for absence. e.g. holiday. The reasons come from the
+     * reference data cache as JSF calls this several times each time the page is shown.
      *
      * @param none
      *
      * @return List of Reasons
      */
     public List<Reason> getPossibleReasons() {
-        return dbFacade.getAllReasons();
+        return referenceDataCache.getReasons();
     }
 
     /**
@@ -66,12 +89,20 @@ public class AbsenceRequestManager implements Serializable {
      * @return none
      */
     public void submitClicked() {
-        // First we calculate the number of days difference between start date and end date and set that value to be associated with the new absence.
-        int numDays = Utils.numDaysDifference(newAbsence.getStartdate(), newAbsence.getEnddate(), dbFacade);
+        // The absence belongs to the logged in user.
+        newAbsence.setEmployeeid(loginManager.getLoggedInUser());
+
+        // First we calculate the number of working days between start date and end date and set that value to be associated with the new absence.
+        int numDays = workdayCalendar.workingDaysBetween(newAbsence.getStartdate(), newAbsence.getEnddate());
         newAbsence.setNumdays(numDays);
 
         // saves the new absence to the datasbase.
         dbFacade.saveAbsence(newAbsence);
+
+        // Emails the managers so they know there is a request to approve. Sickness does not need approving.
+        if (!newAbsence.getReasonid().getReasonid().equals(Constants.REASON_SICKNESS_ID)) {
+            mailSenderBean.sendNewRequestEmail(recipientResolver.getApproverAddresses(), newAbsence.getEmployeeid());
+        }
     }
 
     /**
@@ -84,8 +115,10 @@ public class AbsenceRequestManager implements Serializable {
     public void onSelect(TimelineSelectEvent e) {
         // This code retrieves the absence from the event that was clicked on the timeline.
         // The absence is stored in the data property of the timeline event when the timeline event was created.
+        // The timeline only holds a read-only view of the absence, so the absence itself is loaded using its id.
         TimelineEvent timelineEvent = e.getTimelineEvent();
-        selectedAbsence = (Absence) timelineEvent.getData();
+        AbsenceView clickedAbsence = (AbsenceView) timelineEvent.getData();
+        setSelectedAbsence(dbFacade.getAbsenceWithDetails(clickedAbsence.getAbsenceid()));
 
         //redirect to approval page
         ExternalContext context = FacesContext.getCurrentInstance().getExternalContext();
@@ -105,12 +138,60 @@ public class AbsenceRequestManager implements Serializable {
      * @return The number of absences had in the current year.
      */
     public Integer getAbsenceHad() {
-        // This method creates two variables that work out the start date and end date of the year.
-        DateTime startdate = new DateTime(selectedAbsence.getStartdate()).withDayOfYear(1).withTimeAtStartOfDay();
-        DateTime enddate = startdate.plusYears(1);
+        Absence selectedAbsence = getSelectedAbsence();
+        // This works out the year the absence is in.
+        int year = new DateTime(selectedAbsence.getStartdate()).getYear();
 
-        // This calls a database method to count and return the number of days holiday the user has had that year
-        return dbFacade.getAbsenceHad(selectedAbsence.getEmployeeid(), startdate.toDate(), enddate.toDate(), 1);
+        // This reads the number of days holiday the user has had that year from the absence statistics. A holiday that
+        // runs over the new year only counts the days that fall in this year.
+        return absenceStatisticsStore.getStatistics(selectedAbsence.getEmployeeid().getEmployeeid(), year, Constants.REASON_HOLIDAY_ID).getDays();
+    }
+
+    /**
+     * This method returns the other absences in the same team that overlap the selected absence, so a manager can see
+     * who else is off before approving it.
+     *
+     * @param none
+     *
+     * @return the overlapping absences, ordered by start date.
+     */
+    public List<AbsenceView> getConflicts() {
+        if (conflicts == null) {
+            Absence selectedAbsence = getSelectedAbsence();
+            conflicts = new ArrayList<AbsenceView>();
+            if (selectedAbsence != null) {
+                int roleid = selectedAbsence.getEmployeeid().getRoleid().getRoleid();
+                int firstDay = Utils.toEpochDay(selectedAbsence.getStartdate());
+                int lastDay = Utils.toEpochDay(selectedAbsence.getEnddate());
+                for (AbsenceView thisAbsence : absenceIntervalIndex.getOverlapping(roleid, firstDay, lastDay)) {
+                    if (thisAbsence.getAbsenceid() != selectedAbsence.getAbsenceid()) {
+                        conflicts.add(thisAbsence);
+                    }
+                }
+            }
+        }
+        return conflicts;
+    }
+
+    /**
+     * This method works out how many people in the selected absence's team are off and available on each working day
+     * of the absence, including the selected absence itself.
+     *
+     * @param none
+     *
+     * @return one entry for each working day of the absence.
+     */
+    public List<StaffingDay> getStaffing() {
+        if (staffing == null) {
+            Absence selectedAbsence = getSelectedAbsence();
+            staffing = new ArrayList<StaffingDay>();
+            if (selectedAbsence != null) {
+                int roleid = selectedAbsence.getEmployeeid().getRoleid().getRoleid();
+                staffing = absenceIntervalIndex.getStaffing(roleid, Utils.toEpochDay(selectedAbsence.getStartdate()),
+                        Utils.toEpochDay(selectedAbsence.getEnddate()), staffingHeatMap.getHeadcount(roleid));
+            }
+        }
+        return staffing;
     }
 
     /**
@@ -121,12 +202,13 @@ public class AbsenceRequestManager implements Serializable {
      * @return none
      */
     public void approveClicked() {
+        Absence selectedAbsence = getSelectedAbsence();
         // The absence aprroval boolean is set to true, the absence is saved.
         selectedAbsence.setApproved(true);
         dbFacade.saveAbsence(selectedAbsence);
 
         // Emails the user to tell them that their request has been approved.
-        MailSenderBean.sendApprovedRequestMailer(selectedAbsence.getEmployeeid(), selectedAbsence);
+        mailSenderBean.sendApprovedRequestMailer(selectedAbsence.getEmployeeid(), selectedAbsence);
     }
 
     /**
@@ -137,11 +219,12 @@ public class AbsenceRequestManager implements Serializable {
      * @return none
      */
     public void denyClicked() {
+        Absence selectedAbsence = getSelectedAbsence();
         // Deletes the absence from the database
         dbFacade.deleteAbsence(selectedAbsence);
 
         // emails the user to inform them that their request has been denied.
-        MailSenderBean.sendApprovedRequestMailer(selectedAbsence.getEmployeeid(), selectedAbsence);
+        mailSenderBean.sendApprovedRequestMailer(selectedAbsence.getEmployeeid(), selectedAbsence);
     }
 
     /**
@@ -153,7 +236,7 @@ public class AbsenceRequestManager implements Serializable {
      */
     public void cancelClicked() {
         // Deleteds the absence from the database.
-        dbFacade.deleteAbsence(selectedAbsence);
+        dbFacade.deleteAbsence(getSelectedAbsence());
     }
 
     /**
@@ -165,8 +248,9 @@ public class AbsenceRequestManager implements Serializable {
      * @return a boolean telling the web page whether to show the approval buttons or not.
      */
     public Boolean getShowApprovalButtons() {
+        Absence selectedAbsence = getSelectedAbsence();
         // First checks whether the logged in user is a manager or a superuser (only these roles can approve requests).
-        if (loginManager.getLoggedInUser().getRoleid().getRoleid() == Constants.ROLE_MANAGER_ID || loginManager.getLoggedInUser().getRoleid().getRoleid() == Constants.ROLE_SUPERUSER_ID) {
+        if (loginManager.getManager()) {
             // Then, checks that the request isnt already approved).
             if (!selectedAbsence.getApproved()) {
                 //Finally checks that the  reaason isnt sickness (sickness does not need approval).
@@ -190,14 +274,14 @@ public class AbsenceRequestManager implements Serializable {
      * @return a boolean telling the web page whether to show the approval buttons or not.
      */
     public Boolean getShowCancelButton() {
+        Absence selectedAbsence = getSelectedAbsence();
         // First checks if the logged in user is a manager or a superuser (these roles can always cancel a request).
-        if (loginManager.getLoggedInUser().getRoleid().getRoleid() == Constants.ROLE_MANAGER_ID
-                || loginManager.getLoggedInUser().getRoleid().getRoleid() == Constants.ROLE_SUPERUSER_ID) {
+        if (loginManager.getManager()) {
             return true;
         }
 
         // Then checks if the logged in user is the user that created the absence.
-        if (loginManager.getLoggedInUser().getEmployeeid().equals(selectedAbsence.getEmployeeid().getEmployeeid())) {
+        if (loginManager.getLoggedInUserId().equals(selectedAbsence.getEmployeeid().getEmployeeid())) {
 
             //Checks that the absence is not sickness (sickness cannot be cancelled).
             if (!selectedAbsence.getReasonid().getReasonid().equals(Constants.REASON_SICKNESS_ID)) {
@@ -229,9 +313,12 @@ public class AbsenceRequestManager implements Serializable {
 
 //////// Getters and Setters ////////
     /**
-     * @return the selectedAbsence
+     * @return the selectedAbsence, loaded from the database again if the session has been passivated since it was read.
      */
     public Absence getSelectedAbsence() {
+        if (selectedAbsence == null && selectedAbsenceId != null) {
+            selectedAbsence = dbFacade.getAbsenceWithDetails(selectedAbsenceId);
+        }
         return selectedAbsence;
     }
 
@@ -240,6 +327,9 @@ public class AbsenceRequestManager implements Serializable {
      */
     public void setSelectedAbsence(Absence selectedAbsence) {
         this.selectedAbsence = selectedAbsence;
+        this.selectedAbsenceId = selectedAbsence != null ? selectedAbsence.getAbsenceid() : null;
+        this.conflicts = null;
+        this.staffing = null;
     }
 
     /**
@@ -0,0 +1,38 @@
+package com.smylay.hr;
+
+import java.io.Serializable;
+
+// A small value object holding the number of absences an employee has had and the total number of days they covered.
+// Both numbers are needed to work out the Bradford factor, so they are read from the database together.
+public class AbsenceStatistics implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    public static final AbsenceStatistics NONE = new AbsenceStatistics(0, 0);
+
+    private final int count;
+    private final int days;
+
+    /**
+     * @param count the number of individual absences.
+     * @param days the total number of days absent.
+     */
+    public AbsenceStatistics(int count, int days) {
+        this.count = count;
+        this.days = days;
+    }
+
+    /**
+     * @return the number of individual absences.
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * @return the total number of days absent.
+     */
+    public int getDays() {
+        return days;
+    }
+}
@@ -0,0 +1,180 @@
+package com.smylay.hr;
+
+import com.smylay.hr.model.Absence;
+import java.io.Serializable;
+import java.util.Date;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.event.Observes;
+import javax.enterprise.event.TransactionPhase;
+import javax.inject.Inject;
+import javax.inject.Named;
+import org.jboss.logging.Logger;
+import org.joda.time.LocalDate;
+
+// The absence statistics store keeps a running count of absences and total days absent for every employee, year and
+// reason, so the dashboard and the approval page can read them straight away instead of adding up the absence table.
+// The totals are built once from the database and then kept up to date whenever an absence is saved or deleted.
+// An absence counts towards every year it covers. An absence that runs over the new year is split, and only its working
+// days in each year are added to that year, the same as AbsenceIntervalQuery.
+// "Named" enables beans to be injected into each other which allows them to communicate between each other.
+// "ApplicationScoped" details how long the state is saved. in this case for the duration that the application is running.
+@Named
+@ApplicationScoped
+public class AbsenceStatisticsStore implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    // Here I inject different beans. DBFacade handles database interaction. WorkdayCalendar counts working days.
+    // Logger enables you to output messages to the screen.
+    @Inject
+    DBFacade dbFacade;
+    @Inject
+    WorkdayCalendar workdayCalendar;
+    @Inject
+    Logger log;
+
+    // The totals for each (employee, year, reason), and what each absence added to them so it can be taken off again.
+    // Both are only changed while holding this bean's lock.
+    private transient Map<Long, Totals> totals;
+    private transient Map<Integer, List<Contribution>> contributions;
+
+    /**
+     * This method returns the number of absences and days absent an employee has had in a year for a reason.
+     *
+     * @param employeeid the id of the employee.
+     * @param year the year.
+     * @param reasonid the id of the reason for the absences.
+     *
+     * @return the statistics.
+     */
+    public synchronized AbsenceStatistics getStatistics(Integer employeeid, int year, int reasonid) {
+        if (totals == null) {
+            rebuild();
+        }
+        Totals found = totals.get(key(employeeid, year, reasonid));
+        return found == null ? AbsenceStatistics.NONE : new AbsenceStatistics(found.count, (int) found.days);
+    }
+
+    /**
+     * This method throws away the totals and builds them again from the absence table. It can be run at any time
+     * (e.g. after a bulk import) to reconstruct the statistics.
+     *
+     * @param none
+     *
+     * @return none
+     */
+    public synchronized void rebuild() {
+        long started = System.currentTimeMillis();
+        totals = new HashMap<Long, Totals>();
+        contributions = new HashMap<Integer, List<Contribution>>();
+        List<Object[]> rows = dbFacade.getAbsenceStatisticsRows();
+        for (Object[] row : rows) {
+            add((Integer) row[0], (Integer) row[1], (Integer) row[2], (Date) row[3], (Date) row[4], ((Number) row[5]).floatValue());
+        }
+        log.info("Absence statistics rebuilt from " + rows.size() + " absences in " + (System.currentTimeMillis() - started) + "ms");
+    }
+
+    /**
+     * This method throws away the totals so they are rebuilt the next time they are needed.
+     *
+     * @param none
+     *
+     * @return none
+     */
+    public synchronized void invalidate() {
+        totals = null;
+        contributions = null;
+    }
+
+    /**
+     * This method is called once an absence has been saved or deleted and the change committed to the database. The
+     * absence's old contribution is taken off and its new one added.
+     *
+     * @param event the change that was made.
+     *
+     * @return none
+     */
+    public synchronized void onAbsenceChanged(@Observes(during = TransactionPhase.AFTER_SUCCESS) AbsenceChangedEvent event) {
+        if (totals == null) {
+            // Nothing has been built yet, the change will be included when it is.
+            return;
+        }
+        Absence absence = event.getAbsence();
+        remove(absence.getAbsenceid());
+        if (!event.isDeleted()) {
+            add(absence.getAbsenceid(), absence.getEmployeeid().getEmployeeid(), absence.getReasonid().getReasonid(),
+                    absence.getStartdate(), absence.getEnddate(), absence.getNumdays());
+        }
+    }
+
+    private void add(Integer absenceid, Integer employeeid, Integer reasonid, Date startdate, Date enddate, float numdays) {
+        List<Contribution> added = new ArrayList<Contribution>(1);
+        int startYear = new LocalDate(startdate).getYear();
+        int endYear = new LocalDate(enddate).getYear();
+        if (startYear >= endYear) {
+            // The whole absence is in one year, so its stored number of days is used.
+            added.add(new Contribution(key(employeeid, startYear, reasonid), numdays));
+        } else {
+            // Only the working days of the absence that fall in each year are added to that year.
+            int startDay = Utils.toEpochDay(startdate);
+            int endDay = Utils.toEpochDay(enddate);
+            for (int year = startYear; year <= endYear; year++) {
+                int firstDay = Math.max(startDay, Utils.toEpochDay(new LocalDate(year, 1, 1)));
+                int lastDay = Math.min(endDay, Utils.toEpochDay(new LocalDate(year + 1, 1, 1)) - 1);
+                added.add(new Contribution(key(employeeid, year, reasonid), workdayCalendar.workingDaysBetween(firstDay, lastDay)));
+            }
+        }
+        for (Contribution thisContribution : added) {
+            Totals found = totals.get(thisContribution.key);
+            if (found == null) {
+                found = new Totals();
+                totals.put(thisContribution.key, found);
+            }
+            found.count++;
+            found.days += thisContribution.days;
+        }
+        contributions.put(absenceid, added);
+    }
+
+    private void remove(Integer absenceid) {
+        List<Contribution> old = contributions.remove(absenceid);
+        if (old != null) {
+            for (Contribution thisContribution : old) {
+                Totals found = totals.get(thisContribution.key);
+                found.count--;
+                found.days -= thisContribution.days;
+                if (found.count == 0) {
+                    totals.remove(thisContribution.key);
+                }
+            }
+        }
+    }
+
+    // Packs an employee id, year and reason id into one long so no key objects are needed.
+    private static long key(int employeeid, int year, int reasonid) {
+        return ((long) employeeid << 32) | ((long) year << 16) | (reasonid & 0xFFFF);
+    }
+
+    // The running totals for one (employee, year, reason).
+    private static class Totals {
+
+        private int count;
+        private double days;
+    }
+
+    // What one absence added to the totals of one year.
+    private static class Contribution {
+
+        private final long key;
+        private final float days;
+
+        Contribution(long key, float days) {
+            this.key = key;
+            this.days = days;
+        }
+    }
+}
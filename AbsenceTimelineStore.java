@@ -0,0 +1,239 @@
+package com.smylay.hr;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.event.Observes;
+import javax.enterprise.event.TransactionPhase;
+import javax.inject.Inject;
+import javax.inject.Named;
+import org.jboss.logging.Logger;
+import org.primefaces.model.timeline.TimelineEvent;
+import org.primefaces.model.timeline.TimelineModel;
+
+// The absence timeline store holds one shared set of timeline events for every user, instead of each user's dashboard
+// building its own copy from the database.
+// The events are kept in an array sorted by start date. The array is never changed once it has been published; when an
+// absence is saved or deleted a new array is made and swapped in, so readers never need a lock (copy-on-write).
+// Each dashboard gets its own small timeline model that just points at the shared events in its visible period.
+// The data of each event is an AbsenceView rather than an Absence entity, so no entities are kept in memory.
+// Once the events have been updated the open dashboards are told which absence changed through the timeline push.
+// "Named" enables beans to be injected into each other which allows them to communicate between each other.
+// "ApplicationScoped" details how long the state is saved. in this case for the duration that the application is running.
+@Named
+@ApplicationScoped
+public class AbsenceTimelineStore implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final Comparator<TimelineEvent> BY_START_DATE = new Comparator<TimelineEvent>() {
+        @Override
+        public int compare(TimelineEvent a, TimelineEvent b) {
+            return a.getStartDate().compareTo(b.getStartDate());
+        }
+    };
+
+    // Here I inject different beans. DBFacade handles database interaction. TimelinePush tells the open dashboards about
+    // changes. Logger enables you to output messages to the screen.
+    @Inject
+    DBFacade dbFacade;
+    @Inject
+    TimelinePush timelinePush;
+    @Inject
+    Logger log;
+
+    // The current set of events. It is replaced as a whole whenever anything changes.
+    private transient volatile Snapshot snapshot;
+
+    /**
+     * This method creates a timeline model for a dashboard, holding the events that overlap the given period. Absences
+     * are only read from the database if that period has not been loaded before.
+     *
+     * @param from the start of the period.
+     * @param to the end of the period.
+     *
+     * @return a new timeline model sharing this store's events.
+     */
+    public TimelineModel createModel(Date from, Date to) {
+        Snapshot current = snapshot;
+        if (current == null || from.getTime() < current.loadedFrom || to.getTime() > current.loadedTo) {
+            current = load(from, to);
+        }
+        return new TimelineModel(current.eventsBetween(from.getTime(), to.getTime()));
+    }
+
+    /**
+     * This method returns the current event for an absence, without going to the database.
+     *
+     * @param absenceid the id of the absence.
+     *
+     * @return the event, or null if the absence has been deleted or is outside the loaded period.
+     */
+    public TimelineEvent getEvent(int absenceid) {
+        Snapshot current = snapshot;
+        return current == null ? null : current.byId.get(absenceid);
+    }
+
+    /**
+     * This method throws away all the loaded events so they are read from the database again the next time they are
+     * needed. The open dashboards are told to rebuild their timelines.
+     *
+     * @param none
+     *
+     * @return none
+     */
+    public synchronized void invalidate() {
+        snapshot = null;
+        timelinePush.reloadAll();
+    }
+
+    /**
+     * This method is called once an absence has been saved or deleted and the change committed to the database. Only
+     * the event for that absence is replaced, and then the open dashboards are told which absence changed.
+     *
+     * @param event the change that was made.
+     *
+     * @return none
+     */
+    public synchronized void onAbsenceChanged(@Observes(during = TransactionPhase.AFTER_SUCCESS) AbsenceChangedEvent event) {
+        Snapshot current = snapshot;
+        if (current == null) {
+            // Nothing has been loaded yet, so there is nothing to update and no dashboard is showing it.
+            return;
+        }
+        Map<Integer, TimelineEvent> events = new HashMap<Integer, TimelineEvent>(current.byId);
+        events.remove(event.getAbsence().getAbsenceid());
+        if (!event.isDeleted()) {
+            AbsenceView view = AbsenceView.of(event.getAbsence());
+            TimelineEvent timelineEvent = createTimelineEvent(view);
+            // Absences outside the loaded period are left for when that period is loaded.
+            if (timelineEvent.getStartDate().getTime() < current.loadedTo && timelineEvent.getEndDate().getTime() > current.loadedFrom) {
+                events.put(view.getAbsenceid(), timelineEvent);
+            }
+        }
+        snapshot = new Snapshot(events, current.loadedFrom, current.loadedTo);
+        timelinePush.absenceChanged(event.getAbsence().getAbsenceid());
+    }
+
+    /**
+     * This method makes sure the events for the given period have been loaded. Only the part of the period that has not
+     * already been loaded is read from the database.
+     *
+     * @param from the start of the period.
+     * @param to the end of the period.
+     *
+     * @return the snapshot covering the period.
+     */
+    private synchronized Snapshot load(Date from, Date to) {
+        Snapshot current = snapshot;
+        Map<Integer, TimelineEvent> events;
+        long loadedFrom;
+        long loadedTo;
+        if (current == null) {
+            events = new HashMap<Integer, TimelineEvent>();
+            addAll(events, dbFacade.getAbsenceViewsBetween(from, to));
+            loadedFrom = from.getTime();
+            loadedTo = to.getTime();
+        } else {
+            events = new HashMap<Integer, TimelineEvent>(current.byId);
+            loadedFrom = current.loadedFrom;
+            loadedTo = current.loadedTo;
+            if (from.getTime() < loadedFrom) {
+                addAll(events, dbFacade.getAbsenceViewsBetween(from, new Date(loadedFrom)));
+                loadedFrom = from.getTime();
+            }
+            if (to.getTime() > loadedTo) {
+                addAll(events, dbFacade.getAbsenceViewsBetween(new Date(loadedTo), to));
+                loadedTo = to.getTime();
+            }
+        }
+        current = new Snapshot(events, loadedFrom, loadedTo);
+        snapshot = current;
+        log.info("Absence timeline store now holds " + events.size() + " events");
+        return current;
+    }
+
+    /**
+     * This method creates timeline events for a list of absences and adds them to a map keyed by absence id.
+     *
+     * @param events the map to add to.
+     * @param absences the absences to add.
+     *
+     * @return none
+     */
+    private void addAll(Map<Integer, TimelineEvent> events, List<AbsenceView> absences) {
+        for (AbsenceView thisAbsence : absences) {
+            events.put(thisAbsence.getAbsenceid(), createTimelineEvent(thisAbsence));
+        }
+    }
+
+    /**
+     * This method creates the timeline event for an absence.
+     *
+     * @param thisAbsence the absence to show.
+     *
+     * @return the timeline event.
+     */
+    private TimelineEvent createTimelineEvent(AbsenceView thisAbsence) {
+        // Adds 1 day to the length of the bar as you want the end date to be included as a day off.
+        Date modifiedEndDate = Utils.fromEpochDay(thisAbsence.getEndDay() + 1).toDate();
+        return new TimelineEvent(thisAbsence, thisAbsence.getStartdate(), modifiedEndDate, false, thisAbsence.getEmployeeName(), thisAbsence.getStyleClass());
+    }
+
+    // An unchangeable set of timeline events, sorted by start date.
+    private static class Snapshot {
+
+        private final Map<Integer, TimelineEvent> byId;
+        private final TimelineEvent[] events;
+        private final long loadedFrom;
+        private final long loadedTo;
+        // The length of the longest event, used to know how far back to look for events that overlap a period.
+        private final long longestEvent;
+
+        Snapshot(Map<Integer, TimelineEvent> byId, long loadedFrom, long loadedTo) {
+            this.byId = byId;
+            this.loadedFrom = loadedFrom;
+            this.loadedTo = loadedTo;
+            events = byId.values().toArray(new TimelineEvent[byId.size()]);
+            Arrays.sort(events, BY_START_DATE);
+            long longest = 0;
+            for (TimelineEvent thisEvent : events) {
+                longest = Math.max(longest, thisEvent.getEndDate().getTime() - thisEvent.getStartDate().getTime());
+            }
+            longestEvent = longest;
+        }
+
+        List<TimelineEvent> eventsBetween(long from, long to) {
+            // Nothing that starts before this point can still be running at the start of the period.
+            int i = firstStartingAtOrAfter(from - longestEvent);
+            List<TimelineEvent> result = new ArrayList<TimelineEvent>();
+            for (; i < events.length && events[i].getStartDate().getTime() < to; i++) {
+                if (events[i].getEndDate().getTime() > from) {
+                    result.add(events[i]);
+                }
+            }
+            return result;
+        }
+
+        // A binary search for the first event starting at or after the given time.
+        private int firstStartingAtOrAfter(long time) {
+            int low = 0;
+            int high = events.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (events[mid].getStartDate().getTime() < time) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package com.smylay.hr;
+
+import com.smylay.hr.model.Absence;
+import java.io.Serializable;
+import java.util.Date;
+
+// An absence view is a small, unchangeable copy of the parts of an absence needed to show it, e.g. on the timeline.
+// Dates are stored as epoch days and the employee, their role and the reason as ids, and the names are interned so every view of the
+// same employee or reason shares one string. Unlike an Absence entity it does not hold on to the employee, role and
+// reason entities, and the database never needs to check it for changes.
+public final class AbsenceView implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int absenceid;
+    private final int employeeid;
+    private final int roleid;
+    private final String employeeName;
+    private final int reasonid;
+    private final String reasonName;
+    private final int startDay;
+    private final int endDay;
+    private final float numdays;
+    private final boolean approved;
+
+    /**
+     * This constructor is used by the "SELECT NEW" queries in DBFacade.
+     *
+     * @param absenceid the id of the absence.
+     * @param employeeid the id of the employee.
+     * @param roleid the id of the employee's role.
+     * @param employeeName the name of the employee.
+     * @param reasonid the id of the reason.
+     * @param reasonName the name of the reason.
+     * @param startdate the first day of the absence.
+     * @param enddate the last day of the absence.
+     * @param numdays the number of working days.
+     * @param approved has the absence been approved?
+     */
+    public AbsenceView(Integer absenceid, Integer employeeid, Integer roleid, String employeeName, Integer reasonid, String reasonName,
+            Date startdate, Date enddate, float numdays, boolean approved) {
+        this.absenceid = absenceid;
+        this.employeeid = employeeid;
+        this.roleid = roleid;
+        this.employeeName = employeeName == null ? null : employeeName.intern();
+        this.reasonid = reasonid;
+        this.reasonName = reasonName == null ? null : reasonName.intern();
+        this.startDay = Utils.toEpochDay(startdate);
+        this.endDay = Utils.toEpochDay(enddate);
+        this.numdays = numdays;
+        this.approved = approved;
+    }
+
+    /**
+     * This method makes a view of an absence entity.
+     *
+     * @param absence the absence.
+     *
+     * @return the view.
+     */
+    public static AbsenceView of(Absence absence) {
+        return new AbsenceView(absence.getAbsenceid(), absence.getEmployeeid().getEmployeeid(),
+                absence.getEmployeeid().getRoleid().getRoleid(), absence.getEmployeeid().getName(),
+                absence.getReasonid().getReasonid(), absence.getReasonid().getName(),
+                absence.getStartdate(), absence.getEnddate(), absence.getNumdays(), absence.getApproved());
+    }
+
+    /**
+     * This method works out the style class used to colour the absence on the timeline.
+     *
+     * @param none
+     *
+     * @return "approved" (green), "sickness" (red) or "requested" (orange).
+     */
+    public String getStyleClass() {
+        // Checks the absence's status. if it has been approved. its style class is set to approved (coloured green).
+        if (approved) {
+            return "approved";
+        } else if (reasonid == Constants.REASON_SICKNESS_ID) {
+            // if it has the reason sickness then its styleclass is set to sickness (coloured red).
+            return "sickness";
+        } else {
+            // If it is neither of the above then the style class is set to requested (coloured orange).
+            return "requested";
+        }
+    }
+
+    //////// Getters ////////
+    /**
+     * @return the id of the absence.
+     */
+    public int getAbsenceid() {
+        return absenceid;
+    }
+
+    /**
+     * @return the id of the employee.
+     */
+    public int getEmployeeid() {
+        return employeeid;
+    }
+
+    /**
+     * @return the id of the employee's role.
+     */
+    public int getRoleid() {
+        return roleid;
+    }
+
+    /**
+     * @return the name of the employee.
+     */
+    public String getEmployeeName() {
+        return employeeName;
+    }
+
+    /**
+     * @return the id of the reason.
+     */
+    public int getReasonid() {
+        return reasonid;
+    }
+
+    /**
+     * @return the name of the reason.
+     */
+    public String getReasonName() {
+        return reasonName;
+    }
+
+    /**
+     * @return the first day of the absence as an epoch day.
+     */
+    public int getStartDay() {
+        return startDay;
+    }
+
+    /**
+     * @return the last day of the absence as an epoch day.
+     */
+    public int getEndDay() {
+        return endDay;
+    }
+
+    /**
+     * @return the first day of the absence.
+     */
+    public Date getStartdate() {
+        return Utils.fromEpochDay(startDay).toDate();
+    }
+
+    /**
+     * @return the last day of the absence.
+     */
+    public Date getEnddate() {
+        return Utils.fromEpochDay(endDay).toDate();
+    }
+
+    /**
+     * @return the number of working days.
+     */
+    public float getNumdays() {
+        return numdays;
+    }
+
+    /**
+     * @return has the absence been approved?
+     */
+    public boolean getApproved() {
+        return approved;
+    }
+
+    @Override
+    public String toString() {
+        return "com.smylay.hr.AbsenceView[ absenceid=" + absenceid + " ]";
+    }
+}
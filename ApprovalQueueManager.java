@@ -0,0 +1,219 @@
+package com.smylay.hr;
+
+import com.smylay.hr.model.Absence;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.ejb.Stateful;
+import javax.enterprise.context.SessionScoped;
+import javax.faces.application.FacesMessage;
+import javax.faces.context.FacesContext;
+import javax.inject.Inject;
+import javax.inject.Named;
+import org.jboss.logging.Logger;
+
+// The approval queue manager handles the approval queue page, where a manager can approve or deny many absence
+// requests at once. The selected requests are approved or denied with one statement, and each employee gets one email
+// listing all of their requests that were approved or denied.
+// The queue is shown a page at a time. Each page starts after the last request of the page before (keyset paging), so
+// moving through the pages only ever reads one page of requests, however many absences there are.
+// The following annotations are required to access the bean from the web pages that use it.
+// "Stateful" means the bean holds values that persist across multiple web pages. Each action runs in one transaction,
+// so the absences and the emails about them are saved together.
+// "SessionScoped" details how long the state is saved. In this case the whole session.
+// "Named" enables beans to be injected into each other which allows them to communicate between each other.
+@Stateful
+@SessionScoped
+@Named
+public class ApprovalQueueManager implements Serializable {
+// Here I inject different beans. DBFacade handles database interaction. LoginManager handles the logged in user.
+// MailSenderBean sends emails. Logger enables you to output messages to the screen.
+
+    @Inject
+    DBFacade dbFacade;
+    @Inject
+    LoginManager loginManager;
+    @Inject
+    MailSenderBean mailSenderBean;
+    @Inject
+    Logger log;
+
+    // The page of requests waiting for approval, read once each time the page is shown or changed.
+    private transient List<AbsenceView> pendingAbsences;
+    private transient boolean hasNextPage;
+    private List<AbsenceView> selectedAbsences = new ArrayList<AbsenceView>();
+    // The last request of each page before the current one, so the manager can go back. Empty on the first page.
+    private List<AbsenceView> previousPageEnds = new ArrayList<AbsenceView>();
+
+    /**
+     * This method is called each time the approval queue page is shown, so the latest requests are read starting from
+     * the first page.
+     *
+     * @param none
+     *
+     * @return none
+     */
+    public void init() {
+        previousPageEnds = new ArrayList<AbsenceView>();
+        refresh();
+    }
+
+    /**
+     * This method is called when the manager clicks next on the approval queue page.
+     *
+     * @param none
+     *
+     * @return none
+     */
+    public void nextPageClicked() {
+        List<AbsenceView> page = getPendingAbsences();
+        if (hasNextPage && !page.isEmpty()) {
+            previousPageEnds.add(page.get(page.size() - 1));
+            refresh();
+        }
+    }
+
+    /**
+     * This method is called when the manager clicks previous on the approval queue page.
+     *
+     * @param none
+     *
+     * @return none
+     */
+    public void previousPageClicked() {
+        if (!previousPageEnds.isEmpty()) {
+            previousPageEnds.remove(previousPageEnds.size() - 1);
+            refresh();
+        }
+    }
+
+    // Throws away the current page and selection so the page is read again.
+    private void refresh() {
+        pendingAbsences = null;
+        selectedAbsences = new ArrayList<AbsenceView>();
+    }
+
+    /**
+     * This method is called when the manager clicks approve selected on the approval queue page.
+     *
+     * @param none
+     *
+     * @return none
+     */
+    public void approveSelectedClicked() {
+        if (!loginManager.getManager()) {
+            return;
+        }
+        List<Absence> approved = dbFacade.approveAbsences(selectedIds());
+        sendDigests(approved);
+        showMessage("Approved " + approved.size() + " requests");
+        refresh();
+    }
+
+    /**
+     * This method is called when the manager clicks deny selected on the approval queue page.
+     *
+     * @param none
+     *
+     * @return none
+     */
+    public void denySelectedClicked() {
+        if (!loginManager.getManager()) {
+            return;
+        }
+        List<Absence> denied = dbFacade.denyAbsences(selectedIds());
+        sendDigests(denied);
+        showMessage("Denied " + denied.size() + " requests");
+        refresh();
+    }
+
+    /**
+     * This method sends each employee one email listing their requests that were approved or denied.
+     *
+     * @param absences the absences that were approved or denied.
+     *
+     * @return none
+     */
+    private void sendDigests(List<Absence> absences) {
+        Map<Integer, List<Absence>> byEmployee = new LinkedHashMap<Integer, List<Absence>>();
+        for (Absence thisAbsence : absences) {
+            List<Absence> employeeAbsences = byEmployee.get(thisAbsence.getEmployeeid().getEmployeeid());
+            if (employeeAbsences == null) {
+                employeeAbsences = new ArrayList<Absence>();
+                byEmployee.put(thisAbsence.getEmployeeid().getEmployeeid(), employeeAbsences);
+            }
+            employeeAbsences.add(thisAbsence);
+        }
+        for (List<Absence> employeeAbsences : byEmployee.values()) {
+            mailSenderBean.sendRequestDigest(employeeAbsences.get(0).getEmployeeid(), employeeAbsences);
+        }
+        log.info("Updated " + absences.size() + " absence requests for " + byEmployee.size() + " employees");
+    }
+
+    private List<Integer> selectedIds() {
+        List<Integer> ids = new ArrayList<Integer>(selectedAbsences.size());
+        for (AbsenceView thisAbsence : selectedAbsences) {
+            ids.add(thisAbsence.getAbsenceid());
+        }
+        return ids;
+    }
+
+    private void showMessage(String text) {
+        FacesContext.getCurrentInstance().addMessage(null, new FacesMessage(FacesMessage.SEVERITY_INFO, text, null));
+    }
+
+//////// Getters and Setters ////////
+    /**
+     * @return the current page of requests waiting for approval
+     */
+    public List<AbsenceView> getPendingAbsences() {
+        if (pendingAbsences == null) {
+            AbsenceView after = previousPageEnds.isEmpty() ? null : previousPageEnds.get(previousPageEnds.size() - 1);
+            // Reads one extra request to find out if there is another page after this one.
+            pendingAbsences = dbFacade.getPendingAbsenceViews(after, Constants.APPROVAL_PAGE_SIZE + 1);
+            hasNextPage = pendingAbsences.size() > Constants.APPROVAL_PAGE_SIZE;
+            if (hasNextPage) {
+                pendingAbsences = new ArrayList<AbsenceView>(pendingAbsences.subList(0, Constants.APPROVAL_PAGE_SIZE));
+            }
+        }
+        return pendingAbsences;
+    }
+
+    /**
+     * @return whether there is a page after the current one
+     */
+    public boolean getHasNextPage() {
+        getPendingAbsences();
+        return hasNextPage;
+    }
+
+    /**
+     * @return whether there is a page before the current one
+     */
+    public boolean getHasPreviousPage() {
+        return !previousPageEnds.isEmpty();
+    }
+
+    /**
+     * @return the number of the current page, starting from 1
+     */
+    public int getPageNumber() {
+        return previousPageEnds.size() + 1;
+    }
+
+    /**
+     * @return the selectedAbsences
+     */
+    public List<AbsenceView> getSelectedAbsences() {
+        return selectedAbsences;
+    }
+
+    /**
+     * @param selectedAbsences the selectedAbsences to set
+     */
+    public void setSelectedAbsences(List<AbsenceView> selectedAbsences) {
+        this.selectedAbsences = selectedAbsences != null ? selectedAbsences : new ArrayList<AbsenceView>();
+    }
+}
@@ -15,6 +15,29 @@ public class Constants {
     public static final int MAIL_SERVER_PORT = 25;
     public static final String MAIL_SERVER_PASSWORD = "Gl0bal99";
     public static final String MAIL_SERVER_USERNAME = "MailSender";
+    public static final int MAIL_QUEUE_CAPACITY = 1000;
+    public static final int MAIL_WORKER_THREADS = 2;
+    public static final int MAIL_BATCH_SIZE = 20;
+    public static final long MAIL_TIMEOUT_MILLIS = 10000;
+    public static final long MAIL_RETRY_BACKOFF_MILLIS = 1000;
+    public static final long MAIL_IDLE_MILLIS = 30000;
+    public static final int OUTBOX_BATCH_SIZE = 50;
+    public static final long OUTBOX_CLAIM_MILLIS = 300000;
+    public static final long OUTBOX_MAX_BACKOFF_MILLIS = 3600000;
+
+    public static final int TIMELINE_MARGIN_MONTHS = 1;
+    public static final int IMPORT_BATCH_SIZE = 500;
+    public static final int IMPORT_MAX_REPORTED_ERRORS = 100;
+    public static final int EXPORT_FETCH_SIZE = 1000;
+    public static final long READ_REPLICA_LAG_MILLIS = 5000;
+    public static final int SCRYPT_N = 16384;
+    public static final int SCRYPT_R = 8;
+    public static final int SCRYPT_P = 1;
+    public static final int LOGIN_MAX_FAILURES = 5;
+    public static final long LOGIN_LOCKOUT_MILLIS = 60000;
+    public static final int LOGIN_CACHE_MAX_ENTRIES = 10000;
+    public static final int APPROVAL_PAGE_SIZE = 25;
+    public static final int DIRECTORY_PAGE_SIZE = 25;
 
 }
 // This file sets out some of my constants to be used throughout the project
@@ -0,0 +1,59 @@
+package com.smylay.hr;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+// Writes an export as a CSV file. Values containing commas, quotes or line breaks are wrapped in double quotes.
+public class CsvExportWriter extends ExportWriter {
+
+    private final Writer writer;
+
+    /**
+     * @param out the stream to write to.
+     */
+    public CsvExportWriter(OutputStream out) {
+        this.writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public String getContentType() {
+        return "text/csv; charset=UTF-8";
+    }
+
+    @Override
+    public String getExtension() {
+        return "csv";
+    }
+
+    @Override
+    public void writeRow(Object... values) throws IOException {
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            String text = format(values[i]);
+            if (text.indexOf(',') >= 0 || text.indexOf('"') >= 0 || text.indexOf('\n') >= 0 || text.indexOf('\r') >= 0) {
+                writer.write('"');
+                writer.write(text.replace("\"", "\"\""));
+                writer.write('"');
+            } else {
+                writer.write(text);
+            }
+        }
+        writer.write("\r\n");
+    }
+
+    @Override
+    public void flush() throws IOException {
+        writer.flush();
+    }
+
+    @Override
+    public void finish() throws IOException {
+        writer.flush();
+    }
+}
@@ -3,29 +3,45 @@ package com.smylay.hr;
 import com.smylay.hr.model.Absence;
 import com.smylay.hr.model.Employee;
 import com.smylay.hr.model.Holidays;
+import com.smylay.hr.model.OutboxMessage;
 import com.smylay.hr.model.Reason;
-import java.io.Serializable;
-import java.math.BigInteger;
+import com.smylay.hr.model.Role;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Date;
 import java.util.List;
-import javax.ejb.Stateful;
-import javax.enterprise.context.SessionScoped;
+import javax.annotation.Resource;
+import javax.ejb.SessionContext;
+import javax.ejb.Stateless;
+import javax.ejb.TransactionAttribute;
+import javax.ejb.TransactionAttributeType;
+import javax.enterprise.event.Event;
 import javax.inject.Inject;
 import javax.inject.Named;
 import javax.persistence.EntityManager;
+import javax.persistence.LockModeType;
 import javax.persistence.PersistenceContext;
 import javax.persistence.Query;
+import javax.persistence.TypedQuery;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.Session;
 import org.jboss.logging.Logger;
 
 // DBFacade handles all database interaction.
 // The following annotations are required to access the bean from the web pages that use it.
-// "Stateful" means the bean holds values that persist across multiple web pages.
+// "Stateless" means the bean holds no values for any one user. The container keeps a pool of them and hands each call
+// to a free one, so many users can read and save at the same time. The entity manager only lasts for one transaction,
+// so the entities returned are detached and nothing is held on to between calls.
+// Methods that only read are marked "SUPPORTS", so they join the caller's transaction if there is one but do not start
+// a transaction of their own. Methods that save use the default "REQUIRED" and always run in a transaction.
+// Reporting methods are also marked "ReadOnly", so that they can be answered by the read replica (see ReadOnlyInterceptor).
+// The shared caches read from the main database, as they keep what they read and must not keep a replica that is behind.
 // "Named" enables beans to be injected into each other which allows them to communicate between each other.
-// "SessionScoped" details how long the state is saved. In this case the whole session.
 @Named
-@Stateful
-@SessionScoped
-public class DBFacade implements Serializable {
+@Stateless
+public class DBFacade {
 
     // "PersistenceContext" declares the entity manager that manages reading and saving entities to the database.
     @PersistenceContext(unitName = "searchpointHRPU")
@@ -35,32 +51,94 @@ public class DBFacade implements Serializable {
     @Inject
     Logger log;
 
+    // Used to tell the reference data cache when the reason, role or holidays tables have been changed.
+    @Inject
+    Event<ReferenceDataChangedEvent> referenceDataChanged;
+
+    // Used to tell the beans that keep their own copy of the absences when an absence has been saved or deleted.
+    @Inject
+    Event<AbsenceChangedEvent> absenceChanged;
+
+    // Used to tell the beans that keep track of who has which role when an employee's role or email address changes.
+    @Inject
+    Event<EmployeeChangedEvent> employeeChanged;
+
+    // Used to call this bean's own methods through the container, so their transaction attributes are applied.
+    @Resource
+    SessionContext context;
+
     /**
-     * Gets a user from the database given their username and password
+     * Returns the entity manager that reads should use: the read replica if the ReadOnlyInterceptor has chosen it for
+     * this call, otherwise the main database.
+     *
+     * @param none
+     *
+     * @return the entity manager to read with.
+     */
+    private EntityManager reader() {
+        EntityManager readEm = ReadRouting.current();
+        return readEm != null ? readEm : em;
+    }
+
+    /**
+     * Gets a user from the database given their username and password. The user is found with a single lookup on the
+     * unique username index and the password is checked against the stored hash. If the user still has an old plain
+     * text password, or a hash made with an older cost, it is replaced with a new hash now that the password is known.
+     * Hashing is slow on purpose, so it is done outside any transaction and no database connection is held while it
+     * runs. Only the short write of a new hash has a transaction of its own.
      *
      * @param username
      * @param password
      *
-     * @return an employee entity.
+     * @return an employee entity, or null if the username or password is wrong.
      */
+    @TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
     public Employee getUserFromDatabase(String username, String password) {
-        // Create the hibernate query language (HQL) query.
-        String hql = "select Object(e) from Employee e where e.username = :username and e.password = :password";
-        Query qry = em.createQuery(hql);
-
-        // Setting the username and password parameters of the query.
-        qry.setParameter("username", username);
-        qry.setParameter("password", password);
-
-        try {
-            // Executes the query and returns a employee (if found).
-            Employee retVal = (Employee) qry.getSingleResult();
-            return retVal;
-
-        } catch (Exception ex) {
-            // An exception is thrown if no em,ployee is found (returns null).
+        Employee employee = getUserByUsername(username);
+        String stored = employee != null ? employee.getPassword() : null;
+        if (!PasswordHasher.verify(password, stored)) {
             return null;
         }
+        if (PasswordHasher.needsRehash(stored)) {
+            String upgraded = PasswordHasher.hash(password);
+            if (context.getBusinessObject(DBFacade.class).updatePasswordHash(employee.getEmployeeid(), stored, upgraded)) {
+                employee.setPassword(upgraded);
+                log.info("Upgraded the password hash of employee " + employee.getEmployeeid());
+            }
+        }
+        return employee;
+    }
+
+    /**
+     * Replaces an employee's stored password hash, as long as it has not been changed since it was read.
+     *
+     * @param employeeid = the id of the employee.
+     * @param oldHash = the stored hash the password was checked against.
+     * @param newHash = the hash to store instead.
+     *
+     * @return Boolean was the hash replaced?
+     */
+    public boolean updatePasswordHash(Integer employeeid, String oldHash, String newHash) {
+        return em.createNamedQuery("Employee.updatePassword")
+                .setParameter("password", newHash)
+                .setParameter("employeeid", employeeid)
+                .setParameter("oldpassword", oldHash)
+                .executeUpdate() == 1;
+    }
+
+    /**
+     * Gets a user from the database given their username.
+     *
+     * @param username
+     *
+     * @return an employee entity, or null if there is no employee with that username.
+     */
+    @TransactionAttribute(TransactionAttributeType.SUPPORTS)
+    public Employee getUserByUsername(String username) {
+        List<Employee> found = em.createNamedQuery("Employee.findByUsername", Employee.class)
+                .setParameter("username", username)
+                .getResultList();
+        return found.isEmpty() ? null : found.get(0);
     }
 
     /**
@@ -69,19 +147,15 @@ public class DBFacade implements Serializable {
      * @param type = class of entity.
      * @param id = the id of the entity.
      *
-     * @return an entity of the given type.
+     * @return an entity of the given type, or null if there is none with that id.
      */
+    @TransactionAttribute(TransactionAttributeType.SUPPORTS)
     public <T extends Object> T getEntity(Class<T> type, Integer id) {
-        try {
-            if (id == null) {
-                log.warn("getEntity: ID is NULL");
-                return null;
-            }
-            return em.find(type, id);
-        } catch (Exception e) {
-            log.warn("getEntity: Exception: no Entity found for ID : " + id);
+        // find returns null rather than throwing if there is no entity with that id.
+        if (id == null) {
             return null;
         }
+        return em.find(type, id);
     }
 
     /**
@@ -97,10 +171,27 @@ public class DBFacade implements Serializable {
 
             // If the employee does not already exist, we create a new employee in the database by calling persist.
             em.persist(employee);
+            employeeChanged.fire(new EmployeeChangedEvent(employee, false));
         } else {
 
+            // The saved employee is read first (merge would read it anyway) to find out if the role or email changed.
+            Employee saved = em.find(Employee.class, employee.getEmployeeid());
+            Integer savedRoleid = saved != null && saved.getRoleid() != null ? saved.getRoleid().getRoleid() : null;
+            String savedEmail = saved != null ? saved.getEmail() : null;
+
+            // An employee read back from the session has no password, so the saved one is kept.
+            if (employee.getPassword() == null && saved != null) {
+                employee.setPassword(saved.getPassword());
+            }
+
             // If the employee does already exist, we save the changes made to the employee in the database by calling merge.
-            em.merge(employee);
+            Employee merged = em.merge(employee);
+            Integer roleid = merged.getRoleid() != null ? merged.getRoleid().getRoleid() : null;
+            boolean roleChanged = roleid == null ? savedRoleid != null : !roleid.equals(savedRoleid);
+            boolean emailChanged = merged.getEmail() == null ? savedEmail != null : !merged.getEmail().equals(savedEmail);
+            if (roleChanged || emailChanged) {
+                employeeChanged.fire(new EmployeeChangedEvent(merged, roleChanged));
+            }
         }
     }
 
@@ -117,10 +208,12 @@ public class DBFacade implements Serializable {
 
             // If the absence does not already exist, we create a new absence in the database by calling persist.
             em.persist(absence);
+            absenceChanged.fire(new AbsenceChangedEvent(absence, false));
         } else {
 
             // If the absence does already exist, we save the changes made to the absence in the database by calling merge.
-            em.merge(absence);
+            Absence merged = em.merge(absence);
+            absenceChanged.fire(new AbsenceChangedEvent(merged, false));
         }
     }
 
@@ -132,7 +225,257 @@ public class DBFacade implements Serializable {
      * @return none
      */
     public void deleteAbsence(Absence absence) {
-        em.remove(getEntity(Absence.class, absence.getAbsenceid()));
+        Absence managed = getEntity(Absence.class, absence.getAbsenceid());
+        em.remove(managed);
+        absenceChanged.fire(new AbsenceChangedEvent(managed, true));
+    }
+
+    /**
+     * Approves a number of absence requests with a single update statement, instead of merging each absence. Only
+     * requests that are still waiting for approval (and are not sickness) are approved; they are locked while this
+     * happens so two managers cannot approve the same request twice.
+     *
+     * @param absenceids the ids of the absences to approve.
+     *
+     * @return the absences that were approved, with their employee and reason.
+     */
+    public List<Absence> approveAbsences(List<Integer> absenceids) {
+        List<Absence> pending = lockPendingAbsences(absenceids);
+        if (pending.isEmpty()) {
+            return pending;
+        }
+        em.createNamedQuery("Absence.approveByIds")
+                .setParameter("ids", idsOf(pending))
+                .executeUpdate();
+        for (Absence thisAbsence : pending) {
+            // The update statement does not change the loaded absences, so they are brought up to date here. They have
+            // been detached so this does not cause an update of its own.
+            thisAbsence.setApproved(true);
+            absenceChanged.fire(new AbsenceChangedEvent(thisAbsence, false));
+        }
+        return pending;
+    }
+
+    /**
+     * Denies a number of absence requests by deleting them with a single delete statement. Only requests that are
+     * still waiting for approval (and are not sickness) are deleted.
+     *
+     * @param absenceids the ids of the absences to deny.
+     *
+     * @return the absences that were denied, with their employee and reason.
+     */
+    public List<Absence> denyAbsences(List<Integer> absenceids) {
+        List<Absence> pending = lockPendingAbsences(absenceids);
+        if (pending.isEmpty()) {
+            return pending;
+        }
+        em.createNamedQuery("Absence.deleteByIds")
+                .setParameter("ids", idsOf(pending))
+                .executeUpdate();
+        for (Absence thisAbsence : pending) {
+            absenceChanged.fire(new AbsenceChangedEvent(thisAbsence, true));
+        }
+        return pending;
+    }
+
+    /**
+     * Locks the absences in a list that are still waiting for approval, then reads them with their employee and reason
+     * and detaches them so changing them does not cause an update. Only the absence rows are locked; the employee, role
+     * and reason rows are read without a lock so other users can still use them.
+     *
+     * @param absenceids the ids of the absences.
+     *
+     * @return the pending absences, with their employee and reason.
+     */
+    private List<Absence> lockPendingAbsences(List<Integer> absenceids) {
+        if (absenceids.isEmpty()) {
+            return new ArrayList<Absence>();
+        }
+        List<Integer> locked = em.createNamedQuery("Absence.findPendingIdsIn", Integer.class)
+                .setParameter("ids", absenceids)
+                .setParameter("sicknessid", Constants.REASON_SICKNESS_ID)
+                .setLockMode(LockModeType.PESSIMISTIC_WRITE)
+                .getResultList();
+        if (locked.isEmpty()) {
+            return new ArrayList<Absence>();
+        }
+        List<Absence> pending = em.createNamedQuery("Absence.findPendingByIdsWithDetails", Absence.class)
+                .setParameter("ids", locked)
+                .setParameter("sicknessid", Constants.REASON_SICKNESS_ID)
+                .getResultList();
+        for (Absence thisAbsence : pending) {
+            em.detach(thisAbsence);
+        }
+        return pending;
+    }
+
+    private static List<Integer> idsOf(List<Absence> absences) {
+        List<Integer> ids = new ArrayList<Integer>(absences.size());
+        for (Absence thisAbsence : absences) {
+            ids.add(thisAbsence.getAbsenceid());
+        }
+        return ids;
+    }
+
+    /**
+     * Saves a batch of new entities to the database in a transaction of its own, used by the bulk import. The entity
+     * manager is flushed and cleared afterwards so the saved entities do not build up in memory.
+     *
+     * @param entities the new entities to save
+     *
+     * @return none
+     */
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    public void saveBatch(List<?> entities) {
+        for (Object thisEntity : entities) {
+            em.persist(thisEntity);
+        }
+        em.flush();
+        em.clear();
+    }
+
+    /**
+     * Saves an email to the outbox table. It is saved in the caller's transaction, so it is only sent if the rest of
+     * the caller's changes are saved too.
+     *
+     * @param message the email to save
+     *
+     * @return none
+     */
+    public void saveOutboxMessage(OutboxMessage message) {
+        em.persist(message);
+    }
+
+    /**
+     * Claims the next batch of unsent emails in a transaction of its own. The rows are locked while they are claimed
+     * so two servers sharing the database never claim the same email, and each is given a claim time after which it
+     * can be claimed again if it is never marked as sent.
+     *
+     * @param max the most emails to claim.
+     *
+     * @return the claimed emails.
+     */
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    public List<OutboxMessage> claimOutboxBatch(int max) {
+        Date now = new Date();
+        List<OutboxMessage> batch = em.createNamedQuery("OutboxMessage.findPending", OutboxMessage.class)
+                .setParameter("now", now)
+                .setMaxResults(Math.min(max, Constants.OUTBOX_BATCH_SIZE))
+                .setLockMode(LockModeType.PESSIMISTIC_WRITE)
+                .getResultList();
+        Date claimedUntil = new Date(now.getTime() + Constants.OUTBOX_CLAIM_MILLIS);
+        for (OutboxMessage thisMessage : batch) {
+            thisMessage.setAttempts(thisMessage.getAttempts() + 1);
+            thisMessage.setNextattempt(claimedUntil);
+        }
+        return batch;
+    }
+
+    /**
+     * Records that an email has been sent.
+     *
+     * @param outboxid the id of the email.
+     *
+     * @return none
+     */
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    public void markOutboxSent(Integer outboxid) {
+        em.createNamedQuery("OutboxMessage.markSent")
+                .setParameter("now", new Date())
+                .setParameter("outboxid", outboxid)
+                .executeUpdate();
+    }
+
+    /**
+     * Records that an email could not be sent, the reason why and when to try it again.
+     *
+     * @param outboxid the id of the email.
+     * @param nextattempt when to try sending it again.
+     * @param lasterror the reason it failed.
+     *
+     * @return none
+     */
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    public void markOutboxFailed(Integer outboxid, Date nextattempt, String lasterror) {
+        em.createNamedQuery("OutboxMessage.markFailed")
+                .setParameter("nextattempt", nextattempt)
+                .setParameter("lasterror", lasterror)
+                .setParameter("outboxid", outboxid)
+                .executeUpdate();
+    }
+
+    /**
+     * Makes every unsent email due straight away, e.g. once the mail server is back after an outage.
+     *
+     * @param none
+     *
+     * @return the number of emails that will be retried.
+     */
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    public int replayOutbox() {
+        return em.createNamedQuery("OutboxMessage.replayUnsent")
+                .setParameter("now", new Date())
+                .executeUpdate();
+    }
+
+    /**
+     * Saves a reason entity to the database.
+     *
+     * @param reason the reason to save
+     *
+     * @return none
+     */
+    public void saveReason(Reason reason) {
+        if (reason.getReasonid() == null) {
+            em.persist(reason);
+        } else {
+            em.merge(reason);
+        }
+        referenceDataChanged.fire(new ReferenceDataChangedEvent(Reason.class));
+    }
+
+    /**
+     * Saves a role entity to the database.
+     *
+     * @param role the role to save
+     *
+     * @return none
+     */
+    public void saveRole(Role role) {
+        if (role.getRoleid() == null) {
+            em.persist(role);
+        } else {
+            em.merge(role);
+        }
+        referenceDataChanged.fire(new ReferenceDataChangedEvent(Role.class));
+    }
+
+    /**
+     * Saves a holiday entity to the database.
+     *
+     * @param holiday the holiday to save
+     *
+     * @return none
+     */
+    public void saveHoliday(Holidays holiday) {
+        if (holiday.getHolidayid() == null) {
+            em.persist(holiday);
+        } else {
+            em.merge(holiday);
+        }
+        referenceDataChanged.fire(new ReferenceDataChangedEvent(Holidays.class));
+    }
+
+    /**
+     * Deletes a holiday entity from the database.
+     *
+     * @param holiday the holiday to delete.
+     *
+     * @return none
+     */
+    public void deleteHoliday(Holidays holiday) {
+        em.remove(getEntity(Holidays.class, holiday.getHolidayid()));
+        referenceDataChanged.fire(new ReferenceDataChangedEvent(Holidays.class));
     }
 
     /**
@@ -142,6 +485,7 @@ public class DBFacade implements Serializable {
      *
      * @return List of reasons
      */
+    @TransactionAttribute(TransactionAttributeType.SUPPORTS)
     public List<Reason> getAllReasons() {
         String hql = "SELECT object(r) FROM Reason r";
         Query qry = em.createQuery(hql);
@@ -149,114 +493,297 @@ public class DBFacade implements Serializable {
     }
 
     /**
-     * Returns a list of all employees from the database.
+     * Returns a list of all roles from the database.
      *
      * @param none
      *
-     * @return List of employees
+     * @return List of roles
      */
-    public List<Employee> getAllEmployees() {
-        String hql = "SELECT object(e) FROM Employee e";
+    @TransactionAttribute(TransactionAttributeType.SUPPORTS)
+    public List<Role> getAllRoles() {
+        String hql = "SELECT object(r) FROM Role r";
         Query qry = em.createQuery(hql);
         return qry.getResultList();
     }
 
     /**
-     * Returns a list of all absences from the database.
+     * Returns one page of the employee directory. Only the columns shown in the directory are read, so no employee
+     * entities are loaded. The page starts straight after the given employee in the chosen order rather than at an
+     * offset, so each page is a range read of the index on the sort column and never reads the whole table.
+     *
+     * @param namePrefix = only employees whose name starts with this, or null for all names.
+     * @param jobtitle = only employees with this job title, or null for all job titles.
+     * @param sort = the order of the directory.
+     * @param after = the last employee on the previous page, or null for the first page.
+     * @param pageSize = the number of employees to return.
+     *
+     * @return List of employee summaries.
+     */
+    @TransactionAttribute(TransactionAttributeType.SUPPORTS)
+    @ReadOnly
+    public List<EmployeeSummary> getEmployeeDirectoryPage(String namePrefix, String jobtitle, EmployeeSort sort, EmployeeSummary after, int pageSize) {
+        String column = sort.getColumn();
+        String direction = sort.isDescending() ? " DESC" : "";
+        String comparison = sort.isDescending() ? " < " : " > ";
+        Object afterValue = after != null ? sort.valueOf(after) : null;
+
+        List<String> conditions = new ArrayList<String>();
+        if (namePrefix != null && !namePrefix.isEmpty()) {
+            conditions.add("e.name LIKE :name ESCAPE '!'");
+        }
+        if (jobtitle != null && !jobtitle.isEmpty()) {
+            conditions.add("e.jobtitle = :jobtitle");
+        }
+        if (after != null) {
+            if (afterValue == null) {
+                // The previous page ended among the employees with no value, which come last, so only those are left.
+                conditions.add(column + " IS NULL AND e.employeeid" + comparison + ":afterid");
+            } else {
+                conditions.add("(" + column + comparison + ":after OR (" + column + " = :after AND e.employeeid" + comparison + ":afterid)"
+                        + (sort.isNullable() ? " OR " + column + " IS NULL)" : ")"));
+            }
+        }
+
+        StringBuilder hql = new StringBuilder("SELECT NEW com.smylay.hr.EmployeeSummary(e.employeeid, e.name, e.jobtitle, r.roleid, r.name, e.email, e.absencerating) "
+                + "FROM Employee e JOIN e.roleid r");
+        for (int i = 0; i < conditions.size(); i++) {
+            hql.append(i == 0 ? " WHERE " : " AND ").append(conditions.get(i));
+        }
+        // MySQL puts nulls last when sorting highest first, which is where the keyset above expects them.
+        hql.append(" ORDER BY ").append(column).append(direction).append(", e.employeeid").append(direction);
+
+        TypedQuery<EmployeeSummary> qry = reader().createQuery(hql.toString(), EmployeeSummary.class);
+        if (namePrefix != null && !namePrefix.isEmpty()) {
+            qry.setParameter("name", namePrefix.replace("!", "!!").replace("%", "!%").replace("_", "!_") + "%");
+        }
+        if (jobtitle != null && !jobtitle.isEmpty()) {
+            qry.setParameter("jobtitle", jobtitle);
+        }
+        if (after != null) {
+            if (afterValue != null) {
+                qry.setParameter("after", afterValue);
+            }
+            qry.setParameter("afterid", after.getEmployeeid());
+        }
+        return qry.setMaxResults(pageSize).getResultList();
+    }
+
+    /**
+     * Returns an absence along with its employee, the employee's role and its reason, all read in a single query.
+     *
+     * @param absenceid = the id of the absence.
+     *
+     * @return the absence, or null if there is no absence with that id.
+     */
+    @TransactionAttribute(TransactionAttributeType.SUPPORTS)
+    public Absence getAbsenceWithDetails(Integer absenceid) {
+        List<Absence> found = em.createNamedQuery("Absence.findByAbsenceidWithDetails", Absence.class)
+                .setParameter("absenceid", absenceid)
+                .getResultList();
+        return found.isEmpty() ? null : found.get(0);
+    }
+
+    /**
+     * Returns read-only views of the absences that overlap a period of time. This is backed by the index on the start
+     * and end dates so only the absences needed are read, however many years of absences there are. Only the columns
+     * needed to show the absences are read, in one query, and no entities are created.
+     *
+     * @param from = the start of the period.
+     * @param to = the end of the period.
+     *
+     * @return List of absence views ordered by start date.
+     */
+    @TransactionAttribute(TransactionAttributeType.SUPPORTS)
+    public List<AbsenceView> getAbsenceViewsBetween(Date from, Date to) {
+        return em.createNamedQuery("Absence.findOverlapping", AbsenceView.class)
+                .setParameter("from", from)
+                .setParameter("to", to)
+                .getResultList();
+    }
+
+    /**
+     * Returns one page of read-only views of the absence requests that are waiting for approval, ordered by start date
+     * and then id. Sickness is left out as it never needs approving.
+     * The page starts straight after the given absence rather than at an offset, so the query is a range read of the
+     * index on approved and start date and takes the same time on the last page as on the first, however much history
+     * there is. The database does not support partial indexes, so approved leads the index instead.
+     *
+     * @param after = the last absence on the previous page, or null for the first page.
+     * @param pageSize = the number of absences to return.
+     *
+     * @return List of absence views.
+     */
+    @TransactionAttribute(TransactionAttributeType.SUPPORTS)
+    public List<AbsenceView> getPendingAbsenceViews(AbsenceView after, int pageSize) {
+        TypedQuery<AbsenceView> qry;
+        if (after == null) {
+            qry = em.createNamedQuery("Absence.findPendingViews", AbsenceView.class);
+        } else {
+            qry = em.createNamedQuery("Absence.findPendingViewsAfter", AbsenceView.class)
+                    .setParameter("startdate", after.getStartdate())
+                    .setParameter("absenceid", after.getAbsenceid());
+        }
+        return qry.setParameter("sicknessid", Constants.REASON_SICKNESS_ID)
+                .setMaxResults(pageSize)
+                .getResultList();
+    }
+
+    /**
+     * Returns read-only views of every absence, used to build the absence interval index.
      *
      * @param none
      *
-     * @return List of absences
+     * @return List of absence views.
      */
-    public List<Absence> getAllAbsences() {
-        String hql = "SELECT object(a) FROM Absence a";
-        Query qry = em.createQuery(hql);
-        return qry.getResultList();
+    @TransactionAttribute(TransactionAttributeType.SUPPORTS)
+    public List<AbsenceView> getAllAbsenceViews() {
+        return em.createNamedQuery("Absence.findAllViews", AbsenceView.class).getResultList();
     }
 
     /**
-     * Returns a list of all holidays from the database.
+     * Returns the number of employees that have each role, using one query.
      *
      * @param none
      *
-     * @return List of holidays
+     * @return List of rows of role id and number of employees.
      */
-    public List<Holidays> getAllHolidays() {
-        String hql = "SELECT object(h) FROM Holidays h";
+    @TransactionAttribute(TransactionAttributeType.SUPPORTS)
+    public List<Object[]> countEmployeesByRole() {
+        return em.createNamedQuery("Employee.countGroupByRoleid", Object[].class).getResultList();
+    }
+
+    /**
+     * Returns the few columns of every absence needed to build the absence statistics, without loading the entities.
+     *
+     * @param none
+     *
+     * @return List of rows of absence id, employee id, reason id, start date, end date and number of days.
+     */
+    @TransactionAttribute(TransactionAttributeType.SUPPORTS)
+    public List<Object[]> getAbsenceStatisticsRows() {
+        String hql = "SELECT a.absenceid, a.employeeid.employeeid, a.reasonid.reasonid, a.startdate, a.enddate, a.numdays FROM Absence a";
         Query qry = em.createQuery(hql);
         return qry.getResultList();
     }
 
     /**
-     * Returns the number of days absent an employee has had between two dates from the database.
+     * Returns which of a set of employee ids belong to an employee, using one query.
      *
-     * @param employee = an employee
-     * @param startdate = the start date of the period.
-     * @param enddate = the end date of the period.
-     * @param reasonId = the id of the reason for the absences.
+     * @param employeeids = the ids to look for.
      *
-     * @return Total number of days absent.
+     * @return List of the ids that exist.
      */
-    public Integer getAbsenceHad(Employee employee, Date startdate, Date enddate, Integer reasonId) {
-
-        // Create the hibernate query language (HQL) query.
-        String sql = "SELECT SUM(a.numdays) FROM absence a "
-                + "WHERE a.employeeid = :employeeid "
-                + "AND ((a.enddate > :startdate AND a.enddate < :enddate) OR (a.startdate > :startdate AND a.startdate < :enddate)) "
-                + "AND a.reasonid = :reasonId";
-        Query qry = em.createNativeQuery(sql);
-
-        // Setting the parameters of the query.
-        qry.setParameter("startdate", startdate);
-        qry.setParameter("enddate", enddate);
-        qry.setParameter("employeeid", employee.getEmployeeid());
-        qry.setParameter("reasonId", reasonId);
-        try {
-
-            // Execute the query and return the number of days spent absent.
-            Double result = (Double) qry.getSingleResult();
-            return result.intValue();
-        } catch (Exception e) {
+    @TransactionAttribute(TransactionAttributeType.SUPPORTS)
+    public List<Integer> getExistingEmployeeIds(Collection<Integer> employeeids) {
+        return em.createNamedQuery("Employee.findIdsIn", Integer.class)
+                .setParameter("ids", employeeids)
+                .getResultList();
+    }
 
-            // We could geet an exception if the employee has had no absences.
-            return 0;
-        }
+    /**
+     * Returns the email addresses of the employees that have a role, read using the index on role.
+     *
+     * @param roleid = the id of the role.
+     *
+     * @return List of email addresses.
+     */
+    @TransactionAttribute(TransactionAttributeType.SUPPORTS)
+    public List<String> getEmailsInRole(Integer roleid) {
+        return em.createNamedQuery("Employee.findEmailsByRoleid", String.class)
+                .setParameter("roleid", roleid)
+                .getResultList();
     }
 
     /**
-     * Returns the number of individual absences an employee has had between two dates from the database.
+     * Writes the absences that overlap a period to an export writer. The rows are read through a forward-only cursor
+     * and written out one at a time, and only the columns needed are read, so no entities are loaded and memory use
+     * stays flat however many absences there are.
      *
-     * @param employee = an employee
-     * @param startdate = the start date of the period.
-     * @param enddate = the end date of the period.
-     * @param reasonId = the id of the reason for the absences.
+     * @param from = the start of the period.
+     * @param to = the end of the period.
+     * @param reasonId = only export absences for this reason, or null for all reasons.
+     * @param employeeId = only export absences for this employee, or null for all employees.
+     * @param writer = the writer to write the rows to.
      *
-     * @return Total number of absences.
+     * @return the number of absences written. This runs in a transaction, even though it only reads, so the cursor
+     * keeps the same connection until every row has been read.
      */
-    public Integer getNumOfAbsences(Employee employee, Date startdate, Date enddate, Integer reasonId) {
+    @TransactionAttribute(TransactionAttributeType.REQUIRED)
+    @ReadOnly
+    public int exportAbsences(Date from, Date to, Integer reasonId, Integer employeeId, ExportWriter writer) throws IOException {
+        String hql = "SELECT a.absenceid, e.name, r.name, a.startdate, a.enddate, a.numdays, a.approved, a.reasonother "
+                + "FROM Absence a JOIN a.employeeid e JOIN a.reasonid r "
+                + "WHERE a.startdate < :to AND a.enddate >= :from";
+        if (reasonId != null) {
+            hql += " AND r.reasonid = :reasonId";
+        }
+        if (employeeId != null) {
+            hql += " AND e.employeeid = :employeeId";
+        }
+        hql += " ORDER BY a.startdate";
 
-        // Create the hibernate query language (HQL) query.
-        String sql = "SELECT COUNT(a.absenceid) FROM absence a "
-                + "WHERE a.employeeid = :employeeid "
-                + "AND ((a.enddate > :startdate AND a.enddate < :enddate) OR (a.startdate > :startdate AND a.startdate < :enddate)) "
-                + "AND a.reasonid = :reasonId";
+        // The hibernate query is used directly as plain JPA cannot scroll through results.
+        org.hibernate.Query qry = reader().unwrap(Session.class).createQuery(hql);
+        qry.setParameter("from", from);
+        qry.setParameter("to", to);
+        if (reasonId != null) {
+            qry.setParameter("reasonId", reasonId);
+        }
+        if (employeeId != null) {
+            qry.setParameter("employeeId", employeeId);
+        }
+        qry.setReadOnly(true);
+        qry.setFetchSize(Constants.EXPORT_FETCH_SIZE);
 
-        // Setting the parameters of the query
-        Query qry = em.createNativeQuery(sql);
-        qry.setParameter("startdate", startdate);
-        qry.setParameter("enddate", enddate);
-        qry.setParameter("employeeid", employee.getEmployeeid());
-        qry.setParameter("reasonId", reasonId);
+        int count = 0;
+        ScrollableResults results = qry.scroll(ScrollMode.FORWARD_ONLY);
         try {
+            while (results.next()) {
+                writer.writeRow(results.get());
+                count++;
+            }
+        } finally {
+            results.close();
+        }
+        return count;
+    }
 
-            // Execute the query and return the number absences.
-            BigInteger result = (BigInteger) qry.getSingleResult();
-            return result.intValue();
-        } catch (Exception e) {
+    /**
+     * Returns a list of all holidays from the database.
+     *
+     * @param none
+     *
+     * @return List of holidays
+     */
+    @TransactionAttribute(TransactionAttributeType.SUPPORTS)
+    public List<Holidays> getAllHolidays() {
+        String hql = "SELECT object(h) FROM Holidays h";
+        Query qry = em.createQuery(hql);
+        return qry.getResultList();
+    }
 
-            // We could geet an exception if the employee has had no absences (return 0).
-            return 0;
-        }
+    /**
+     * Returns the start date, end date and number of days of an employee's absences for a reason that overlap a
+     * period of time. An absence overlaps if it starts before the end of the period and ends on or after its start, so
+     * absences that start before the period, end after it, or cover all of it are all found. The query is backed by
+     * the index on employee, reason and start date.
+     *
+     * @param employeeid = the id of the employee.
+     * @param reasonid = the id of the reason for the absences.
+     * @param from = the start of the period.
+     * @param to = the end of the period (not included).
+     *
+     * @return List of rows of start date, end date and number of days.
+     */
+    @TransactionAttribute(TransactionAttributeType.SUPPORTS)
+    @ReadOnly
+    public List<Object[]> getAbsenceIntervals(Integer employeeid, Integer reasonid, Date from, Date to) {
+        return reader().createNamedQuery("Absence.findIntervalsForEmployee", Object[].class)
+                .setParameter("employeeid", employeeid)
+                .setParameter("reasonid", reasonid)
+                .setParameter("from", from)
+                .setParameter("to", to)
+                .getResultList();
     }
 
 }
@@ -1,6 +1,6 @@
 package com.smylay.hr;
 
-import com.smylay.hr.model.Absence;
+import com.smylay.hr.model.Role;
 import javax.ejb.Stateful;
 import javax.enterprise.context.SessionScoped;
 import javax.inject.Named;
@@ -9,15 +9,19 @@ import javax.annotation.PostConstruct;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import javax.faces.application.FacesMessage;
 import javax.faces.context.FacesContext;
 import javax.inject.Inject;
 import org.jboss.logging.Logger;
 import org.joda.time.DateTime;
+import org.primefaces.PrimeFaces;
 import org.primefaces.model.chart.MeterGaugeChartModel;
+import org.primefaces.event.timeline.TimelineRangeEvent;
 import org.primefaces.event.timeline.TimelineSelectEvent;
 import org.primefaces.model.timeline.TimelineEvent;
 import org.primefaces.model.timeline.TimelineModel;
+import org.primefaces.component.timeline.TimelineUpdater;
 
 // The dashboard manager handeles all functions of the dashboard.
 // The following annotations are required to access the bean from the web pages that use it.
@@ -30,6 +34,8 @@ import org.primefaces.model.timeline.TimelineModel;
 public class DashboardManager implements Serializable {
 // Here I inject different beans. DBFacade handles database interaction. LoginManager handles the logged in user. 
 // Logger enables you to output messages to the screen. AbsenceRequestManager handeles absence requests.
+// AbsenceTimelineStore holds the timeline events shared by every user. AbsenceStatisticsStore holds absence totals.
+// StaffingHeatMap holds the number of people off each day. ReferenceDataCache holds the roles.
 
     @Inject
     DBFacade dbFacade;
@@ -38,26 +44,41 @@ public class DashboardManager implements Serializable {
     @Inject
     AbsenceRequestManager absenceRequestManager;
     @Inject
+    AbsenceTimelineStore absenceTimelineStore;
+    @Inject
+    AbsenceStatisticsStore absenceStatisticsStore;
+    @Inject
+    StaffingHeatMap staffingHeatMap;
+    @Inject
+    ReferenceDataCache referenceDataCache;
+    @Inject
     Logger log;
 
-    private TimelineModel model;
-    private MeterGaugeChartModel meterGaugeModel;
+    // The models are not kept when the session is passivated. They are built again the next time the page asks for them.
+    private transient TimelineModel model;
+    private transient MeterGaugeChartModel meterGaugeModel;
+    private transient StaffingHeatMapModel heatMapModel;
     private Date start;
     private Date end;
+    // The period of time that absences have been loaded for (the visible period plus a margin either side).
+    private Date loadedFrom;
+    private Date loadedTo;
 
     // "PostConstruct" means that this method runs straight after the construction of an instance of this class.
-    // init calls createMeterGaugeModels, then sets the start date to the first day of the current month and the end
-    // date to three months later. IT then calls timelineInit.
+    // init sets the start date to the first day of the current month and the end date to three months later.
+    // It is also run each time the dashboard is shown, so the models are thrown away and built again from the latest
+    // absences when the dashboard next asks for them.
     @PostConstruct
     public void init() {
-        createMeterGaugeModels();
+        model = null;
+        meterGaugeModel = null;
+        heatMapModel = null;
         DateTime startDateTime = new DateTime();
         DateTime endDateTime = new DateTime();
         startDateTime = startDateTime.withDayOfMonth(1).withTimeAtStartOfDay();
         endDateTime = startDateTime.plusMonths(3);
         start = startDateTime.toDate();
         end = endDateTime.toDate();
-        timelineInit();
     }
 
     /**
@@ -87,23 +108,20 @@ public class DashboardManager implements Serializable {
      */
     private MeterGaugeChartModel initMeterGaugeModel() {
         // Works out the current year.
-        DateTime startOfYear = new DateTime();
-        DateTime endOfYear = new DateTime();
-        startOfYear = startOfYear.withDayOfYear(1).withTimeAtStartOfDay();
-        endOfYear = startOfYear.plusYears(1);
-        Date yearStart = startOfYear.toDate();
-        Date yearEnd = endOfYear.toDate();
+        int year = new DateTime().getYear();
 
-        // Retrieves the number of individual absences and total number of days absent in the current year.
-        int numOfAbsences = dbFacade.getNumOfAbsences(loginManager.getLoggedInUser(), yearStart, yearEnd, 2);
-        int absenceHad = dbFacade.getAbsenceHad(loginManager.getLoggedInUser(), yearStart, yearEnd, 2);
+        // Retrieves the number of individual absences and total number of days absent in the current year from the
+        // absence statistics. Only the days of an absence that fall in this year are counted, the same as the approval page.
+        AbsenceStatistics statistics = absenceStatisticsStore.getStatistics(loginManager.getLoggedInUser().getEmployeeid(), year, Constants.REASON_SICKNESS_ID);
 
         // Calulates the absence rating.
-        int num = absenceRequestManager.calculateAbsenceRating(numOfAbsences, absenceHad);
+        int num = absenceRequestManager.calculateAbsenceRating(statistics.getCount(), statistics.getDays());
 
-        // Saves the absence rating to the Employee in the database.
-        loginManager.getLoggedInUser().setAbsenceRating(num);
-        dbFacade.saveEmployee(loginManager.getLoggedInUser());
+        // Saves the absence rating to the Employee in the database, but only if it has changed.
+        if (!Integer.valueOf(num).equals(loginManager.getLoggedInUser().getAbsencerating())) {
+            loginManager.getLoggedInUser().setAbsenceRating(num);
+            dbFacade.saveEmployee(loginManager.getLoggedInUser());
+        }
 
         // Outputs a line of text displaying the users absence rating
         log.info("Absence Rating = " + loginManager.getLoggedInUser().getAbsencerating());
@@ -126,37 +144,92 @@ public class DashboardManager implements Serializable {
     }
 
     /**
-     * This method initialises the timeline.
+     * This method builds the staffing heat map for the current year. Each role's counts are copied out of the staffing
+     * heat map in one go and its headcount is cached there, so nothing is read from the database.
+     *
+     * @param none
+     *
+     * @return none
+     */
+    private void createHeatMapModel() {
+        int year = new DateTime().getYear();
+        heatMapModel = new StaffingHeatMapModel(year);
+        for (Role thisRole : referenceDataCache.getRoles()) {
+            heatMapModel.addRow(thisRole.getName(), staffingHeatMap.getHeadcount(thisRole.getRoleid()),
+                    staffingHeatMap.getYear(thisRole.getRoleid(), year));
+        }
+    }
+
+    /**
+     * This method initialises the timeline. Only the absences that overlap the visible period (plus a margin either
+     * side) are included, so the time taken does not grow as the history of absences grows. The events themselves are
+     * shared with every other user through the absence timeline store.
      *
      * @param none
      *
      * @return none
      */
     protected void timelineInit() {
-        model = new TimelineModel();
-
-        // Gets a list of all the absences in the database.
-        List<Absence> absences = dbFacade.getAllAbsences();
-        for (Absence thisAbsence : absences) {
-            String styleClass;
-            // Sets the colour of the event on the timeline
-            // Checks each absence's status. if it has been approved. its style class is set to approved (coloured green).
-            if (thisAbsence.getApproved()) {
-                styleClass = "approved";
-            } else if (thisAbsence.getReasonid().getReasonid().equals(Constants.REASON_SICKNESS_ID)) {
-                // if it has the reason sickness then its styleclass is set to sickness (coloured red).
-                styleClass = "sickness";
-            } else {
-                // If it is neither of the above then the style class is set to requested (coloured orange). 
-                styleClass = "requested";
+        loadedFrom = new DateTime(start).minusMonths(Constants.TIMELINE_MARGIN_MONTHS).toDate();
+        loadedTo = new DateTime(end).plusMonths(Constants.TIMELINE_MARGIN_MONTHS).toDate();
+        model = absenceTimelineStore.createModel(loadedFrom, loadedTo);
+    }
+
+    /**
+     * This method is called when the user scrolls or zooms the timeline.
+     *
+     * @param e the event holding the new visible period.
+     *
+     * @return none
+     */
+    public void onRangeChanged(TimelineRangeEvent e) {
+        start = e.getStartDate();
+        end = e.getEndDate();
+
+        // Only goes back to the database if the user has moved outside the absences that are already loaded.
+        if (loadedFrom == null || start.before(loadedFrom) || end.after(loadedTo)) {
+            timelineInit();
+            PrimeFaces.current().ajax().update("timeline");
+        }
+    }
+
+    /**
+     * This method is called from the page when the timeline push says an absence has changed. Only that absence's event
+     * is taken out of this dashboard's timeline and put back from the absence timeline store, and only that change is
+     * sent to the browser. If no absence is given the whole timeline is rebuilt.
+     *
+     * @param none
+     *
+     * @return none
+     */
+    public void onTimelinePushed() {
+        if (model == null) {
+            // The timeline has not been built yet, so it will include the change when it is.
+            return;
+        }
+        Map<String, String> params = FacesContext.getCurrentInstance().getExternalContext().getRequestParameterMap();
+        String absenceid = params.get("absenceid");
+        if (absenceid == null || absenceid.isEmpty()) {
+            timelineInit();
+            PrimeFaces.current().ajax().update("timeline");
+            return;
+        }
+        int id = Integer.parseInt(absenceid);
+        TimelineUpdater timelineUpdater = TimelineUpdater.getCurrentInstance(":timeline");
+
+        // Takes out the old event for the absence, if this dashboard was showing it.
+        for (TimelineEvent thisEvent : model.getEvents()) {
+            if (((AbsenceView) thisEvent.getData()).getAbsenceid() == id) {
+                model.delete(thisEvent, timelineUpdater);
+                break;
             }
-            // Adds 1 day to the length of the bar as you want the end date to be included as a day off.
-            DateTime modifiedEndDate = new DateTime(thisAbsence.getEnddate());
-            modifiedEndDate = modifiedEndDate.plusDays(1);
-            TimelineEvent event = new TimelineEvent(thisAbsence, thisAbsence.getStartdate(), modifiedEndDate.toDate(), false, thisAbsence.getEmployeeid().getName(), styleClass);
-            model.add(event);
         }
 
+        // Puts in the new event if the absence still exists and is in the loaded period.
+        TimelineEvent latest = absenceTimelineStore.getEvent(id);
+        if (latest != null && latest.getStartDate().before(loadedTo) && latest.getEndDate().after(loadedFrom)) {
+            model.add(latest, timelineUpdater);
+        }
     }
 
     /**
@@ -179,13 +252,29 @@ public class DashboardManager implements Serializable {
      * @return model the meter gauge model
      */
     public MeterGaugeChartModel getMeterGaugeModel() {
+        if (meterGaugeModel == null) {
+            createMeterGaugeModels();
+        }
         return meterGaugeModel;
     }
 
+    /**
+     * @return the staffing heat map model
+     */
+    public StaffingHeatMapModel getHeatMapModel() {
+        if (heatMapModel == null) {
+            createHeatMapModel();
+        }
+        return heatMapModel;
+    }
+
     /**
      * @return model the timeline model to get
      */
     public TimelineModel getModel() {
+        if (model == null) {
+            timelineInit();
+        }
         return model;
     }
 
@@ -1,6 +1,9 @@
 package com.smylay.hr.model;
 
-import java.io.Serializable;
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
 import java.util.Collection;
 import javax.persistence.Basic;
 import javax.persistence.CascadeType;
@@ -9,6 +12,7 @@ import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Index;
 import javax.persistence.JoinColumn;
 import javax.persistence.ManyToOne;
 import javax.persistence.NamedQueries;
@@ -22,7 +26,12 @@ import javax.xml.bind.annotation.XmlTransient;
 // This is an entity class automatically generated by java that allows the system to access and interact with my database table Employee
 
 @Entity
-@Table(name = "employee")
+@Table(name = "employee", indexes = {
+    @Index(name = "idx_employee_username", columnList = "username", unique = true)
+    , @Index(name = "idx_employee_name", columnList = "name, employeeid")
+    , @Index(name = "idx_employee_jobtitle_name", columnList = "jobtitle, name, employeeid")
+    , @Index(name = "idx_employee_role", columnList = "roleid, employeeid")
+    , @Index(name = "idx_employee_rating", columnList = "absencerating, employeeid")})
 @XmlRootElement
 @NamedQueries({
     @NamedQuery(name = "Employee.findAll", query = "SELECT e FROM Employee e")
@@ -30,10 +39,13 @@ import javax.xml.bind.annotation.XmlTransient;
     , @NamedQuery(name = "Employee.findByName", query = "SELECT e FROM Employee e WHERE e.name = :name")
     , @NamedQuery(name = "Employee.findByJobtitle", query = "SELECT e FROM Employee e WHERE e.jobtitle = :jobtitle")
     , @NamedQuery(name = "Employee.findByUsername", query = "SELECT e FROM Employee e WHERE e.username = :username")
-    , @NamedQuery(name = "Employee.findByPassword", query = "SELECT e FROM Employee e WHERE e.password = :password")
     , @NamedQuery(name = "Employee.findByEmail", query = "SELECT e FROM Employee e WHERE e.email = :email")
-    , @NamedQuery(name = "Employee.findByTelephone", query = "SELECT e FROM Employee e WHERE e.telephone = :telephone")})
-public class Employee implements Serializable {
+    , @NamedQuery(name = "Employee.findByTelephone", query = "SELECT e FROM Employee e WHERE e.telephone = :telephone")
+    , @NamedQuery(name = "Employee.updatePassword", query = "UPDATE Employee e SET e.password = :password WHERE e.employeeid = :employeeid AND e.password = :oldpassword")
+    , @NamedQuery(name = "Employee.findIdsIn", query = "SELECT e.employeeid FROM Employee e WHERE e.employeeid IN :ids")
+    , @NamedQuery(name = "Employee.countGroupByRoleid", query = "SELECT e.roleid.roleid, COUNT(e) FROM Employee e GROUP BY e.roleid.roleid")
+    , @NamedQuery(name = "Employee.findEmailsByRoleid", query = "SELECT e.email FROM Employee e WHERE e.roleid.roleid = :roleid AND e.email IS NOT NULL")})
+public class Employee implements Externalizable {
 
     /**
      * @return the daysAllowed
@@ -68,8 +80,9 @@ public class Employee implements Serializable {
     @Size(max = 45)
     @Column(name = "username")
     private String username;
-    @Size(max = 45)
-    @Column(name = "password")
+    // Holds a scrypt hash (see PasswordHasher) rather than the password itself.
+    @Size(max = 200)
+    @Column(name = "password", length = 200)
     private String password;
     // @Pattern(regexp="[a-z0-9!#$%&'*+/=?^_`{|}~-]+(?:\\.[a-z0-9!#$%&'*+/=?^_`{|}~-]+)*@(?:[a-z0-9](?:[a-z0-9-]*[a-z0-9])?\\.)+[a-z0-9](?:[a-z0-9-]*[a-z0-9])?", message="Invalid email")//if the field contains email address consider using this annotation to enforce field validation
     @Size(max = 200)
@@ -201,6 +214,53 @@ public class Employee implements Serializable {
         return "com.smylay.hr.model.Employee[ employeeid=" + employeeid + " ]";
     }
 
+    /**
+     * Writes the compact form of the employee used when a session is passivated or replicated. Only the columns and
+     * the role's id and name are written; the absences are left out, so an employee never drags their whole history
+     * of absences into the session. The password hash is left out too, so it is never written to the session store.
+     *
+     * @param out the stream to write to.
+     */
+    @Override
+    public void writeExternal(ObjectOutput out) throws IOException {
+        EntityStreams.writeInteger(out, employeeid);
+        EntityStreams.writeString(out, name);
+        EntityStreams.writeString(out, jobtitle);
+        EntityStreams.writeString(out, username);
+        EntityStreams.writeString(out, email);
+        EntityStreams.writeString(out, telephone);
+        EntityStreams.writeInteger(out, daysallowed);
+        EntityStreams.writeInteger(out, absencerating);
+        EntityStreams.writeInteger(out, numofabsences);
+        out.writeBoolean(roleid != null);
+        if (roleid != null) {
+            EntityStreams.writeInteger(out, roleid.getRoleid());
+            EntityStreams.writeString(out, roleid.getName());
+        }
+    }
+
+    /**
+     * Reads the compact form written by writeExternal. The absences are not read back; they are loaded again if the
+     * employee is used with the database. The password is left null, and saveEmployee keeps the saved one.
+     *
+     * @param in the stream to read from.
+     */
+    @Override
+    public void readExternal(ObjectInput in) throws IOException {
+        employeeid = EntityStreams.readInteger(in);
+        name = EntityStreams.readString(in);
+        jobtitle = EntityStreams.readString(in);
+        username = EntityStreams.readString(in);
+        email = EntityStreams.readString(in);
+        telephone = EntityStreams.readString(in);
+        daysallowed = EntityStreams.readInteger(in);
+        absencerating = EntityStreams.readInteger(in);
+        numofabsences = EntityStreams.readInteger(in);
+        if (in.readBoolean()) {
+            roleid = new Role(EntityStreams.readInteger(in), EntityStreams.readString(in));
+        }
+    }
+
     /**
      * @return the absenceRating
      */
@@ -0,0 +1,36 @@
+package com.smylay.hr;
+
+import com.smylay.hr.model.Employee;
+
+// This event is fired by DBFacade when an employee is added, or when an employee's role or email address is changed.
+// Beans that keep copies of who has which role, or of their addresses, observe it once the change has been committed.
+public class EmployeeChangedEvent {
+
+    private final Employee employee;
+    private final boolean roleChanged;
+
+    /**
+     * @param employee the employee that was saved.
+     * @param roleChanged true if an existing employee was moved to another role, false for a new employee or if only
+     * the email changed.
+     */
+    public EmployeeChangedEvent(Employee employee, boolean roleChanged) {
+        this.employee = employee;
+        this.roleChanged = roleChanged;
+    }
+
+    /**
+     * @return the employee that was saved.
+     */
+    public Employee getEmployee() {
+        return employee;
+    }
+
+    /**
+     * @return true if an existing employee was moved to another role, false for a new employee or if only the email
+     * changed.
+     */
+    public boolean isRoleChanged() {
+        return roleChanged;
+    }
+}
@@ -0,0 +1,193 @@
+package com.smylay.hr;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import javax.enterprise.context.SessionScoped;
+import javax.inject.Inject;
+import javax.inject.Named;
+
+// The employee directory manager handles the employee directory page, where a superuser can look through the
+// employees a page at a time, sorted by name, role or absence rating and filtered by name and job title.
+// Each page starts after the last employee of the page before (keyset paging), so only one page of employees is ever
+// read from the database.
+// The following annotations are required to access the bean from the web pages that use it.
+// "SessionScoped" details how long the state is saved. In this case the whole session.
+// "Named" enables beans to be injected into each other which allows them to communicate between each other.
+@SessionScoped
+@Named
+public class EmployeeDirectoryManager implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    // Here I inject different beans. DBFacade handles database interaction. LoginManager handles the logged in user.
+    @Inject
+    DBFacade dbFacade;
+    @Inject
+    LoginManager loginManager;
+
+    private String namePrefix;
+    private String jobtitle;
+    private EmployeeSort sort = EmployeeSort.NAME;
+    // The current page, read once each time the page or the search is changed.
+    private transient List<EmployeeSummary> employees;
+    private transient boolean hasNextPage;
+    // The last employee of each page before the current one, so the user can go back. Empty on the first page.
+    private List<EmployeeSummary> previousPageEnds = new ArrayList<EmployeeSummary>();
+
+    /**
+     * This method is called when the search is changed, and starts again from the first page.
+     *
+     * @param none
+     *
+     * @return none
+     */
+    public void searchClicked() {
+        previousPageEnds = new ArrayList<EmployeeSummary>();
+        employees = null;
+    }
+
+    /**
+     * This method is called when the user clicks next on the employee directory page.
+     *
+     * @param none
+     *
+     * @return none
+     */
+    public void nextPageClicked() {
+        List<EmployeeSummary> page = getEmployees();
+        if (hasNextPage && !page.isEmpty()) {
+            previousPageEnds.add(page.get(page.size() - 1));
+            employees = null;
+        }
+    }
+
+    /**
+     * This method is called when the user clicks previous on the employee directory page.
+     *
+     * @param none
+     *
+     * @return none
+     */
+    public void previousPageClicked() {
+        if (!previousPageEnds.isEmpty()) {
+            previousPageEnds.remove(previousPageEnds.size() - 1);
+            employees = null;
+        }
+    }
+
+    /**
+     * This method checks whether the logged in user can see the employee directory. Only superusers can.
+     *
+     * @param none
+     *
+     * @return Boolean can the user see the directory?
+     */
+    public Boolean getAllowed() {
+        return loginManager.getLoggedIn() && loginManager.getLoggedInRoleId() == Constants.ROLE_SUPERUSER_ID;
+    }
+
+//////// Getters and Setters ////////
+    /**
+     * @return the current page of employees
+     */
+    public List<EmployeeSummary> getEmployees() {
+        if (!getAllowed()) {
+            return new ArrayList<EmployeeSummary>();
+        }
+        if (employees == null) {
+            EmployeeSummary after = previousPageEnds.isEmpty() ? null : previousPageEnds.get(previousPageEnds.size() - 1);
+            // Reads one extra employee to find out if there is another page after this one.
+            employees = dbFacade.getEmployeeDirectoryPage(namePrefix, jobtitle, sort, after, Constants.DIRECTORY_PAGE_SIZE + 1);
+            hasNextPage = employees.size() > Constants.DIRECTORY_PAGE_SIZE;
+            if (hasNextPage) {
+                employees = new ArrayList<EmployeeSummary>(employees.subList(0, Constants.DIRECTORY_PAGE_SIZE));
+            }
+        }
+        return employees;
+    }
+
+    /**
+     * @return whether there is a page after the current one
+     */
+    public boolean getHasNextPage() {
+        getEmployees();
+        return hasNextPage;
+    }
+
+    /**
+     * @return whether there is a page before the current one
+     */
+    public boolean getHasPreviousPage() {
+        return !previousPageEnds.isEmpty();
+    }
+
+    /**
+     * @return the number of the current page, starting from 1
+     */
+    public int getPageNumber() {
+        return previousPageEnds.size() + 1;
+    }
+
+    /**
+     * @return the orders the directory can be sorted in
+     */
+    public EmployeeSort[] getSorts() {
+        return EmployeeSort.values();
+    }
+
+    /**
+     * @return the namePrefix
+     */
+    public String getNamePrefix() {
+        return namePrefix;
+    }
+
+    /**
+     * @param namePrefix the namePrefix to set
+     */
+    public void setNamePrefix(String namePrefix) {
+        if (!Objects.equals(this.namePrefix, namePrefix)) {
+            // The pages already read were for the old search, so it starts again from the first page.
+            searchClicked();
+        }
+        this.namePrefix = namePrefix;
+    }
+
+    /**
+     * @return the jobtitle
+     */
+    public String getJobtitle() {
+        return jobtitle;
+    }
+
+    /**
+     * @param jobtitle the jobtitle to set
+     */
+    public void setJobtitle(String jobtitle) {
+        if (!Objects.equals(this.jobtitle, jobtitle)) {
+            searchClicked();
+        }
+        this.jobtitle = jobtitle;
+    }
+
+    /**
+     * @return the sort
+     */
+    public EmployeeSort getSort() {
+        return sort;
+    }
+
+    /**
+     * @param sort the sort to set
+     */
+    public void setSort(EmployeeSort sort) {
+        EmployeeSort newSort = sort != null ? sort : EmployeeSort.NAME;
+        if (newSort != this.sort) {
+            // The last employee of each page is only a place in the old order, so it starts again from the first page.
+            searchClicked();
+        }
+        this.sort = newSort;
+    }
+}
@@ -0,0 +1,69 @@
+package com.smylay.hr;
+
+// The orders the employee directory can be sorted in. Each order is the sort column followed by the employee id, so
+// every employee has a unique place in it and a page can start straight after the last employee of the page before.
+public enum EmployeeSort {
+
+    NAME("Name", "e.name", false, false),
+    ROLE("Role", "e.roleid.roleid", false, false),
+    // Highest absence rating first. Employees whose rating has never been worked out come last.
+    RATING("Absence rating", "e.absencerating", true, true);
+
+    private final String label;
+    private final String column;
+    private final boolean descending;
+    private final boolean nullable;
+
+    EmployeeSort(String label, String column, boolean descending, boolean nullable) {
+        this.label = label;
+        this.column = column;
+        this.descending = descending;
+        this.nullable = nullable;
+    }
+
+    /**
+     * This method returns the value of the sort column for an employee in the directory.
+     *
+     * @param employee the employee.
+     *
+     * @return the value the employee is sorted by.
+     */
+    Object valueOf(EmployeeSummary employee) {
+        switch (this) {
+            case ROLE:
+                return employee.getRoleid();
+            case RATING:
+                return employee.getAbsencerating();
+            default:
+                return employee.getName();
+        }
+    }
+
+    /**
+     * @return the label shown on the page
+     */
+    public String getLabel() {
+        return label;
+    }
+
+    /**
+     * @return the JPQL path of the sort column
+     */
+    String getColumn() {
+        return column;
+    }
+
+    /**
+     * @return whether the order is highest first
+     */
+    boolean isDescending() {
+        return descending;
+    }
+
+    /**
+     * @return whether the sort column can be null
+     */
+    boolean isNullable() {
+        return nullable;
+    }
+}
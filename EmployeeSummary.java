@@ -0,0 +1,93 @@
+package com.smylay.hr;
+
+import java.io.Serializable;
+
+// An employee summary is a small, unchangeable copy of the columns of an employee shown in the employee directory.
+// It is read with a "SELECT NEW" query, so no employee entities (or their absences) are loaded to fill the directory.
+public final class EmployeeSummary implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int employeeid;
+    private final String name;
+    private final String jobtitle;
+    private final int roleid;
+    private final String roleName;
+    private final String email;
+    private final Integer absencerating;
+
+    /**
+     * This constructor is used by the "SELECT NEW" query in DBFacade.
+     *
+     * @param employeeid the id of the employee.
+     * @param name the name of the employee.
+     * @param jobtitle the job title of the employee.
+     * @param roleid the id of the employee's role.
+     * @param roleName the name of the employee's role.
+     * @param email the email address of the employee.
+     * @param absencerating the absence rating of the employee, or null if it has never been worked out.
+     */
+    public EmployeeSummary(Integer employeeid, String name, String jobtitle, Integer roleid, String roleName, String email, Integer absencerating) {
+        this.employeeid = employeeid;
+        this.name = name;
+        this.jobtitle = jobtitle;
+        this.roleid = roleid;
+        this.roleName = roleName == null ? null : roleName.intern();
+        this.email = email;
+        this.absencerating = absencerating;
+    }
+
+    /**
+     * @return the employeeid
+     */
+    public int getEmployeeid() {
+        return employeeid;
+    }
+
+    /**
+     * @return the name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the jobtitle
+     */
+    public String getJobtitle() {
+        return jobtitle;
+    }
+
+    /**
+     * @return the roleid
+     */
+    public int getRoleid() {
+        return roleid;
+    }
+
+    /**
+     * @return the roleName
+     */
+    public String getRoleName() {
+        return roleName;
+    }
+
+    /**
+     * @return the email
+     */
+    public String getEmail() {
+        return email;
+    }
+
+    /**
+     * @return the absencerating
+     */
+    public Integer getAbsencerating() {
+        return absencerating;
+    }
+
+    @Override
+    public String toString() {
+        return "EmployeeSummary[ employeeid=" + employeeid + ", name=" + name + " ]";
+    }
+}
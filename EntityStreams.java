@@ -0,0 +1,47 @@
+package com.smylay.hr.model;
+
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.util.Date;
+
+// EntityStreams has the helper methods used by the entities to write their compact externalized form.
+// Each value that can be null is written with a boolean in front of it saying whether it is there.
+final class EntityStreams {
+
+    private EntityStreams() {
+    }
+
+    static void writeInteger(ObjectOutput out, Integer value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeInt(value);
+        }
+    }
+
+    static Integer readInteger(ObjectInput in) throws IOException {
+        return in.readBoolean() ? in.readInt() : null;
+    }
+
+    static void writeString(ObjectOutput out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    static String readString(ObjectInput in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    static void writeDate(ObjectOutput out, Date value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeLong(value.getTime());
+        }
+    }
+
+    static Date readDate(ObjectInput in) throws IOException {
+        return in.readBoolean() ? new Date(in.readLong()) : null;
+    }
+}
@@ -0,0 +1,80 @@
+package com.smylay.hr;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+// An export writer writes rows of values straight to an output stream as they are read from the database, so the
+// export never has to be held in memory. Each file format is a subclass.
+public abstract class ExportWriter {
+
+    /**
+     * This method creates the writer for a file format.
+     *
+     * @param format "xlsx" for an Excel workbook, anything else for CSV.
+     * @param out the stream to write to.
+     *
+     * @return the export writer.
+     */
+    public static ExportWriter forFormat(String format, OutputStream out) {
+        if ("xlsx".equalsIgnoreCase(format)) {
+            return new XlsxExportWriter(out);
+        }
+        return new CsvExportWriter(out);
+    }
+
+    /**
+     * @return the content type to send with the file.
+     */
+    public abstract String getContentType();
+
+    /**
+     * @return the file extension, without the dot.
+     */
+    public abstract String getExtension();
+
+    /**
+     * This method writes one row.
+     *
+     * @param values the values in the row. Dates are written as yyyy-MM-dd.
+     *
+     * @return none
+     */
+    public abstract void writeRow(Object... values) throws IOException;
+
+    /**
+     * This method pushes what has been written so far out to the output stream.
+     *
+     * @param none
+     *
+     * @return none
+     */
+    public abstract void flush() throws IOException;
+
+    /**
+     * This method finishes the file and flushes it to the output stream. The stream itself is not closed.
+     *
+     * @param none
+     *
+     * @return none
+     */
+    public abstract void finish() throws IOException;
+
+    /**
+     * This method turns a value into the text written to the file.
+     *
+     * @param value the value.
+     *
+     * @return the text, or an empty string for null.
+     */
+    protected static String format(Object value) {
+        if (value == null) {
+            return "";
+        }
+        if (value instanceof Date) {
+            return new SimpleDateFormat("yyyy-MM-dd").format((Date) value);
+        }
+        return value.toString();
+    }
+}
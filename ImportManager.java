@@ -0,0 +1,352 @@
+package com.smylay.hr;
+
+import com.smylay.hr.model.Absence;
+import com.smylay.hr.model.Employee;
+import com.smylay.hr.model.Reason;
+import com.smylay.hr.model.Role;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.ejb.EJBException;
+import javax.ejb.Stateful;
+import javax.ejb.TransactionAttribute;
+import javax.ejb.TransactionAttributeType;
+import javax.enterprise.context.SessionScoped;
+import javax.faces.application.FacesMessage;
+import javax.faces.context.FacesContext;
+import javax.inject.Inject;
+import javax.inject.Named;
+import org.jboss.logging.Logger;
+import org.joda.time.LocalDate;
+import org.primefaces.event.FileUploadEvent;
+import org.primefaces.model.UploadedFile;
+
+// The import manager loads employees and absences in bulk from a CSV or JSON file, e.g. when a new site is set up.
+// The file is read one row at a time and the rows are saved in batches, each batch in its own transaction, and the
+// entity manager is cleared after every batch. This means memory use stays the same however big the file is.
+// The following annotations are required to access the bean from the web pages that use it.
+// "Stateful" means the bean holds values that persist across multiple web pages.
+// "SessionScoped" details how long the state is saved. In this case the whole session.
+// "Named" enables beans to be injected into each other which allows them to communicate between each other.
+@Stateful
+@SessionScoped
+@Named
+public class ImportManager implements Serializable {
+
+    // Here I inject different beans. DBFacade handles database interaction. LoginManager handles the logged in user.
+    // ReferenceDataCache holds the reasons and roles. WorkdayCalendar counts working days. The absence stores are told
+    // to reload after absences are imported, and the recipient resolver after employees are imported. ReadConsistency keeps this user's reads on the main database just after an
+    // import. Logger enables you to output messages to the screen.
+    @Inject
+    DBFacade dbFacade;
+    @Inject
+    LoginManager loginManager;
+    @Inject
+    ReferenceDataCache referenceDataCache;
+    @Inject
+    WorkdayCalendar workdayCalendar;
+    @Inject
+    AbsenceStatisticsStore absenceStatisticsStore;
+    @Inject
+    AbsenceTimelineStore absenceTimelineStore;
+    @Inject
+    AbsenceIntervalIndex absenceIntervalIndex;
+    @Inject
+    StaffingHeatMap staffingHeatMap;
+    @Inject
+    RecipientResolver recipientResolver;
+    @Inject
+    ReadConsistency readConsistency;
+    @Inject
+    Logger log;
+
+    private ImportReport lastReport;
+
+    /**
+     * This method is called when an employee file is uploaded on the import page.
+     *
+     * @param e the upload event holding the file.
+     *
+     * @return none
+     */
+    @TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+    public void employeeFileUploaded(FileUploadEvent e) {
+        if (!getAllowed()) {
+            return;
+        }
+        try (ImportRowReader rows = open(e.getFile())) {
+            showReport(importEmployees(rows));
+        } catch (IOException ex) {
+            log.error("Error reading employee import file", ex);
+            showError("The file could not be read");
+        }
+    }
+
+    /**
+     * This method is called when an absence file is uploaded on the import page.
+     *
+     * @param e the upload event holding the file.
+     *
+     * @return none
+     */
+    @TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+    public void absenceFileUploaded(FileUploadEvent e) {
+        if (!getAllowed()) {
+            return;
+        }
+        try (ImportRowReader rows = open(e.getFile())) {
+            showReport(importAbsences(rows));
+        } catch (IOException ex) {
+            log.error("Error reading absence import file", ex);
+            showError("The file could not be read");
+        }
+    }
+
+    /**
+     * This method imports employees. The columns are name, jobtitle, username, password, email, telephone, daysallowed
+     * and roleid. daysallowed and roleid are optional and default to the same values as the sign-up page.
+     *
+     * @param rows the rows to import.
+     *
+     * @return a report of how the import went.
+     */
+    @TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+    public ImportReport importEmployees(ImportRowReader rows) throws IOException {
+        Batch batch = new Batch();
+        Map<String, String> row;
+        int rowNumber = 0;
+        try {
+            while ((row = rows.next()) != null) {
+                rowNumber++;
+                try {
+                    Role role = referenceDataCache.getRole(intValue(row.get("roleid"), Constants.ROLE_EMPLOYEE_ID));
+                    if (role == null) {
+                        throw new IllegalArgumentException("Unknown role " + row.get("roleid"));
+                    }
+                    Employee employee = new Employee();
+                    employee.setName(row.get("name"));
+                    employee.setJobtitle(row.get("jobtitle"));
+                    employee.setUsername(row.get("username"));
+                    // Passwords are stored as hashes, never as they are given in the file.
+                    String password = row.get("password");
+                    employee.setPassword(password != null && !password.isEmpty() ? PasswordHasher.hash(password) : null);
+                    employee.setEmail(row.get("email"));
+                    employee.setTelephone(row.get("telephone"));
+                    employee.setDaysallowed(intValue(row.get("daysallowed"), 25));
+                    employee.setAbsenceRating(0);
+                    employee.setNumOfAbsences(0);
+                    employee.setRoleid(role);
+                    batch.add(employee, rowNumber);
+                } catch (RuntimeException ex) {
+                    batch.reject(rowNumber, ex.getMessage());
+                }
+            }
+            return batch.finish("employees");
+        } finally {
+            // The employees were saved without going through saveEmployee, so the addresses and headcounts are read again
+            // when next needed.
+            recipientResolver.invalidate();
+            staffingHeatMap.invalidate();
+            readConsistency.recordWrite();
+        }
+    }
+
+    /**
+     * This method imports absences. The columns are employeeid, reasonid, startdate, enddate (both yyyy-MM-dd),
+     * reasonother and approved. The number of days is worked out from the dates.
+     *
+     * @param rows the rows to import.
+     *
+     * @return a report of how the import went.
+     */
+    @TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+    public ImportReport importAbsences(ImportRowReader rows) throws IOException {
+        Batch batch = new AbsenceBatch();
+        Map<String, String> row;
+        int rowNumber = 0;
+        try {
+            while ((row = rows.next()) != null) {
+                rowNumber++;
+                try {
+                    Reason reason = referenceDataCache.getReason(intValue(row.get("reasonid"), null));
+                    if (reason == null) {
+                        throw new IllegalArgumentException("Unknown reason " + row.get("reasonid"));
+                    }
+                    Absence absence = new Absence();
+                    // Only the employee's id is needed to save the absence, so the employee is not loaded.
+                    Integer employeeid = intValue(row.get("employeeid"), null);
+                    if (employeeid == null) {
+                        throw new IllegalArgumentException("Missing employeeid");
+                    }
+                    absence.setEmployeeid(new Employee(employeeid));
+                    absence.setReasonid(reason);
+                    absence.setStartdate(LocalDate.parse(row.get("startdate")).toDate());
+                    absence.setEnddate(LocalDate.parse(row.get("enddate")).toDate());
+                    if (absence.getEnddate().before(absence.getStartdate())) {
+                        throw new IllegalArgumentException("enddate is before startdate");
+                    }
+                    absence.setReasonother(row.get("reasonother"));
+                    absence.setApproved(Boolean.parseBoolean(row.get("approved")));
+                    absence.setNumdays(workdayCalendar.workingDaysBetween(absence.getStartdate(), absence.getEnddate()));
+                    batch.add(absence, rowNumber);
+                } catch (RuntimeException ex) {
+                    batch.reject(rowNumber, ex.getMessage());
+                }
+            }
+            return batch.finish("absences");
+        } finally {
+            // The absences were saved without going through saveAbsence, so the stores are rebuilt when next needed.
+            absenceStatisticsStore.invalidate();
+            absenceTimelineStore.invalidate();
+            absenceIntervalIndex.invalidate();
+            staffingHeatMap.invalidate();
+            readConsistency.recordWrite();
+        }
+    }
+
+    /**
+     * @return Boolean is the logged in user allowed to import? Only superusers can.
+     */
+    public Boolean getAllowed() {
+        return loginManager.getLoggedIn() && loginManager.getLoggedInRoleId() == Constants.ROLE_SUPERUSER_ID;
+    }
+
+    /**
+     * @return the report of the last import.
+     */
+    public ImportReport getLastReport() {
+        return lastReport;
+    }
+
+    private ImportRowReader open(UploadedFile file) throws IOException {
+        InputStreamReader reader = new InputStreamReader(file.getInputstream(), StandardCharsets.UTF_8);
+        if (file.getFileName().toLowerCase().endsWith(".json")) {
+            return ImportRowReader.forJson(reader);
+        }
+        return ImportRowReader.forCsv(reader);
+    }
+
+    private void showReport(ImportReport report) {
+        lastReport = report;
+        FacesContext.getCurrentInstance().addMessage(null, new FacesMessage(FacesMessage.SEVERITY_INFO, "Import finished", report.toString()));
+    }
+
+    private void showError(String detail) {
+        FacesContext.getCurrentInstance().addMessage(null, new FacesMessage(FacesMessage.SEVERITY_ERROR, "Import failed", detail));
+    }
+
+    private static Integer intValue(String value, Integer defaultValue) {
+        if (value == null || value.trim().isEmpty()) {
+            return defaultValue;
+        }
+        return Integer.valueOf(value.trim());
+    }
+
+    // Collects rows into batches and saves each full batch, counting what was imported and rejected and remembering
+    // which rows were rejected and why.
+    private class Batch {
+
+        private final long started = System.currentTimeMillis();
+        protected final List<Object> entities = new ArrayList<Object>(Constants.IMPORT_BATCH_SIZE);
+        protected final List<Integer> rowNumbers = new ArrayList<Integer>(Constants.IMPORT_BATCH_SIZE);
+        private final List<String> errors = new ArrayList<String>();
+        private int imported;
+        private int rejected;
+
+        void add(Object entity, int rowNumber) {
+            entities.add(entity);
+            rowNumbers.add(rowNumber);
+            if (entities.size() == Constants.IMPORT_BATCH_SIZE) {
+                save();
+            }
+        }
+
+        void reject(int rowNumber, String reason) {
+            rejected++;
+            // Only the first few reasons are kept so a file of bad rows does not fill the session.
+            if (errors.size() < Constants.IMPORT_MAX_REPORTED_ERRORS) {
+                errors.add("Row " + rowNumber + ": " + reason);
+            }
+            log.debug("Import row " + rowNumber + " rejected: " + reason);
+        }
+
+        ImportReport finish(String what) {
+            save();
+            ImportReport report = new ImportReport(imported, rejected, System.currentTimeMillis() - started, errors);
+            log.info("Imported " + what + ": " + report);
+            return report;
+        }
+
+        // Takes out any rows that can be seen to be wrong before the batch is saved.
+        protected void check() {
+        }
+
+        private void save() {
+            check();
+            if (!entities.isEmpty()) {
+                try {
+                    dbFacade.saveBatch(entities);
+                    imported += entities.size();
+                } catch (EJBException ex) {
+                    // If any row in the batch breaks a database rule the whole batch is rolled back, so each row is
+                    // saved on its own to find out which rows are wrong. Only those rows are rejected.
+                    log.warn("Import batch of " + entities.size() + " rows failed, saving row by row: " + ex.getMessage());
+                    for (int i = 0; i < entities.size(); i++) {
+                        try {
+                            dbFacade.saveBatch(Collections.singletonList(entities.get(i)));
+                            imported++;
+                        } catch (EJBException rowFailure) {
+                            reject(rowNumbers.get(i), rootMessage(rowFailure));
+                        }
+                    }
+                }
+            }
+            entities.clear();
+            rowNumbers.clear();
+        }
+
+        // Removes the row at a position in the batch and rejects it.
+        protected void remove(int i, String reason) {
+            entities.remove(i);
+            reject(rowNumbers.remove(i), reason);
+        }
+    }
+
+    // A batch of absences, which checks that every employee exists with one query before the batch is saved.
+    private class AbsenceBatch extends Batch {
+
+        @Override
+        protected void check() {
+            Set<Integer> employeeids = new HashSet<Integer>();
+            for (Object thisEntity : entities) {
+                employeeids.add(((Absence) thisEntity).getEmployeeid().getEmployeeid());
+            }
+            if (employeeids.isEmpty()) {
+                return;
+            }
+            Set<Integer> existing = new HashSet<Integer>(dbFacade.getExistingEmployeeIds(employeeids));
+            for (int i = entities.size() - 1; i >= 0; i--) {
+                Integer employeeid = ((Absence) entities.get(i)).getEmployeeid().getEmployeeid();
+                if (!existing.contains(employeeid)) {
+                    remove(i, "Unknown employee " + employeeid);
+                }
+            }
+        }
+    }
+
+    // Finds the message of the exception that caused a failure, which says which database rule was broken.
+    private static String rootMessage(Throwable ex) {
+        Throwable cause = ex;
+        while (cause.getCause() != null && cause.getCause() != cause) {
+            cause = cause.getCause();
+        }
+        return String.valueOf(cause.getMessage());
+    }
+}
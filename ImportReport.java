@@ -0,0 +1,70 @@
+package com.smylay.hr;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// A small value object describing how an import went.
+public class ImportReport implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int imported;
+    private final int rejected;
+    private final long elapsedMillis;
+    private final List<String> errors;
+
+    /**
+     * @param imported the number of rows saved to the database.
+     * @param rejected the number of rows that could not be imported.
+     * @param elapsedMillis how long the import took.
+     * @param errors which rows were rejected and why (only the first few).
+     */
+    public ImportReport(int imported, int rejected, long elapsedMillis, List<String> errors) {
+        this.imported = imported;
+        this.rejected = rejected;
+        this.elapsedMillis = elapsedMillis;
+        this.errors = Collections.unmodifiableList(new ArrayList<String>(errors));
+    }
+
+    /**
+     * @return the number of rows saved to the database.
+     */
+    public int getImported() {
+        return imported;
+    }
+
+    /**
+     * @return the number of rows that could not be imported.
+     */
+    public int getRejected() {
+        return rejected;
+    }
+
+    /**
+     * @return which rows were rejected and why, e.g. "Row 12: Unknown employee 99" (only the first few are kept).
+     */
+    public List<String> getErrors() {
+        return errors;
+    }
+
+    /**
+     * @return how long the import took in milliseconds.
+     */
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    /**
+     * @return the number of rows read per second.
+     */
+    public long getRowsPerSecond() {
+        return (imported + rejected) * 1000L / Math.max(1, elapsedMillis);
+    }
+
+    @Override
+    public String toString() {
+        return imported + " rows imported, " + rejected + " rejected in " + elapsedMillis + "ms (" + getRowsPerSecond() + " rows/s)";
+    }
+}
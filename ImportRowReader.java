@@ -0,0 +1,189 @@
+package com.smylay.hr;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.json.Json;
+import javax.json.stream.JsonParser;
+
+// The import row reader reads the rows of an import file one at a time, so only one row is ever held in memory however
+// big the file is. Each row is returned as a map of column name to value.
+// Two formats are understood: CSV with a header line naming the columns, and a JSON array of objects.
+public abstract class ImportRowReader implements Closeable {
+
+    /**
+     * This method creates a reader for a CSV file. The first line must name the columns. Values may be wrapped in
+     * double quotes to include commas, with a quote inside written as two quotes. Each row must be on one line.
+     *
+     * @param reader the file to read.
+     *
+     * @return the row reader.
+     */
+    public static ImportRowReader forCsv(Reader reader) throws IOException {
+        return new CsvRowReader(new BufferedReader(reader));
+    }
+
+    /**
+     * This method creates a reader for a JSON file holding an array of objects.
+     *
+     * @param reader the file to read.
+     *
+     * @return the row reader.
+     */
+    public static ImportRowReader forJson(Reader reader) {
+        return new JsonRowReader(Json.createParser(reader));
+    }
+
+    /**
+     * This method reads the next row.
+     *
+     * @param none
+     *
+     * @return the row as a map of column name to value, or null at the end of the file.
+     */
+    public abstract Map<String, String> next() throws IOException;
+
+    // Reads CSV rows using the header line for the column names.
+    private static class CsvRowReader extends ImportRowReader {
+
+        private final BufferedReader reader;
+        private final List<String> header;
+
+        CsvRowReader(BufferedReader reader) throws IOException {
+            this.reader = reader;
+            String headerLine = reader.readLine();
+            header = headerLine == null ? new ArrayList<String>() : split(headerLine);
+        }
+
+        @Override
+        public Map<String, String> next() throws IOException {
+            String line = reader.readLine();
+            // Blank lines are skipped.
+            while (line != null && line.trim().isEmpty()) {
+                line = reader.readLine();
+            }
+            if (line == null) {
+                return null;
+            }
+            List<String> values = split(line);
+            Map<String, String> row = new HashMap<String, String>();
+            for (int i = 0; i < header.size() && i < values.size(); i++) {
+                row.put(header.get(i).trim().toLowerCase(), values.get(i));
+            }
+            return row;
+        }
+
+        // Splits a line into its values, taking account of quoted values.
+        private static List<String> split(String line) {
+            List<String> values = new ArrayList<String>();
+            StringBuilder value = new StringBuilder();
+            boolean quoted = false;
+            for (int i = 0; i < line.length(); i++) {
+                char c = line.charAt(i);
+                if (quoted) {
+                    if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                        value.append('"');
+                        i++;
+                    } else if (c == '"') {
+                        quoted = false;
+                    } else {
+                        value.append(c);
+                    }
+                } else if (c == '"') {
+                    quoted = true;
+                } else if (c == ',') {
+                    values.add(value.toString());
+                    value.setLength(0);
+                } else {
+                    value.append(c);
+                }
+            }
+            values.add(value.toString());
+            return values;
+        }
+
+        @Override
+        public void close() throws IOException {
+            reader.close();
+        }
+    }
+
+    // Reads the objects of a JSON array one at a time using the streaming parser.
+    private static class JsonRowReader extends ImportRowReader {
+
+        private final JsonParser parser;
+
+        JsonRowReader(JsonParser parser) {
+            this.parser = parser;
+        }
+
+        @Override
+        public Map<String, String> next() {
+            // Moves on to the start of the next object, or stops at the end of the array.
+            while (parser.hasNext()) {
+                JsonParser.Event event = parser.next();
+                if (event == JsonParser.Event.START_OBJECT) {
+                    return readObject();
+                }
+                if (event == JsonParser.Event.END_ARRAY) {
+                    return null;
+                }
+            }
+            return null;
+        }
+
+        private Map<String, String> readObject() {
+            Map<String, String> row = new HashMap<String, String>();
+            String key = null;
+            // How deep inside nested objects or arrays we are. Only the values of the row object itself are kept.
+            int depth = 0;
+            while (parser.hasNext()) {
+                JsonParser.Event event = parser.next();
+                switch (event) {
+                    case KEY_NAME:
+                        key = parser.getString().toLowerCase();
+                        break;
+                    case VALUE_STRING:
+                    case VALUE_NUMBER:
+                        if (depth == 0) {
+                            row.put(key, parser.getString());
+                        }
+                        break;
+                    case VALUE_TRUE:
+                    case VALUE_FALSE:
+                        if (depth == 0) {
+                            row.put(key, String.valueOf(event == JsonParser.Event.VALUE_TRUE));
+                        }
+                        break;
+                    case START_OBJECT:
+                    case START_ARRAY:
+                        depth++;
+                        break;
+                    case END_ARRAY:
+                        depth--;
+                        break;
+                    case END_OBJECT:
+                        if (depth == 0) {
+                            return row;
+                        }
+                        depth--;
+                        break;
+                    default:
+                        // Nulls are ignored.
+                        break;
+                }
+            }
+            return row;
+        }
+
+        @Override
+        public void close() {
+            parser.close();
+        }
+    }
+}
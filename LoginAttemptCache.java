@@ -0,0 +1,119 @@
+package com.smylay.hr;
+
+import java.io.Serializable;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Named;
+
+// The login attempt cache remembers recent failed logins for each username.
+// Once a username has failed too many times in a short period, further attempts are turned away straight away without
+// going to the database or working out a password hash, until the period is over. This stops someone guessing
+// passwords from slowing down the login screen for everyone else.
+// "Named" enables beans to be injected into each other which allows them to communicate between each other.
+// "ApplicationScoped" details how long the state is saved. in this case for the duration that the application is running.
+@Named
+@ApplicationScoped
+public class LoginAttemptCache implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final Map<String, Failures> failures = new ConcurrentHashMap<String, Failures>();
+
+    /**
+     * This method checks whether a username has failed to log in too many times recently.
+     *
+     * @param username the username being logged in with.
+     *
+     * @return Boolean should the attempt be turned away without checking the password?
+     */
+    public boolean isBlocked(String username) {
+        Failures current = failures.get(key(username));
+        if (current == null) {
+            return false;
+        }
+        if (current.isExpired(System.currentTimeMillis())) {
+            failures.remove(key(username), current);
+            return false;
+        }
+        return current.count >= Constants.LOGIN_MAX_FAILURES;
+    }
+
+    /**
+     * This method records a failed login.
+     *
+     * @param username the username that was logged in with.
+     *
+     * @return none
+     */
+    public void recordFailure(String username) {
+        long now = System.currentTimeMillis();
+        if (failures.size() >= Constants.LOGIN_CACHE_MAX_ENTRIES) {
+            removeExpired(now);
+        }
+        String key = key(username);
+        while (true) {
+            Failures current = failures.get(key);
+            if (current == null || current.isExpired(now)) {
+                Failures first = new Failures(1, now);
+                if (current == null ? failures.putIfAbsent(key, first) == null : failures.replace(key, current, first)) {
+                    return;
+                }
+            } else if (failures.replace(key, current, new Failures(current.count + 1, current.firstFailure))) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * This method forgets the failed logins of a username once it has logged in successfully.
+     *
+     * @param username the username that was logged in with.
+     *
+     * @return none
+     */
+    public void recordSuccess(String username) {
+        failures.remove(key(username));
+    }
+
+    /**
+     * This method removes the failures that are too old to matter, so the cache cannot keep growing.
+     *
+     * @param now the current time.
+     *
+     * @return none
+     */
+    private void removeExpired(long now) {
+        Iterator<Failures> it = failures.values().iterator();
+        while (it.hasNext()) {
+            if (it.next().isExpired(now)) {
+                it.remove();
+            }
+        }
+    }
+
+    // Usernames are not case sensitive in the database, so they are not here either.
+    private static String key(String username) {
+        return username == null ? "" : username.trim().toLowerCase(Locale.ROOT);
+    }
+
+    // The number of failed logins for a username since the first one. It is replaced rather than changed.
+    private static final class Failures implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int count;
+        private final long firstFailure;
+
+        Failures(int count, long firstFailure) {
+            this.count = count;
+            this.firstFailure = firstFailure;
+        }
+
+        boolean isExpired(long now) {
+            return now - firstFailure >= Constants.LOGIN_LOCKOUT_MILLIS;
+        }
+    }
+}
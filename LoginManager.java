@@ -22,10 +22,14 @@ import org.jboss.logging.Logger;
 @Named
 public class LoginManager implements Serializable {
 
-    // Here I inject different beans. DBFacade handles database interaction. Logger enables you to output messages to the screen.
+    // Here I inject different beans. DBFacade handles database interaction. LoginAttemptCache turns away repeated failed
+    // logins. Logger enables you to output messages to the screen.
     @Inject
     DBFacade dbFacade;
 
+    @Inject
+    LoginAttemptCache loginAttemptCache;
+
     @Inject
     Logger log;
 
@@ -33,7 +37,11 @@ public class LoginManager implements Serializable {
     private String password;
     private Boolean rememberMe;
 
-    private Employee loggedInUser;
+    // Only the id and role of the logged in user are kept in the session, so passivating or replicating the session
+    // writes a couple of ints rather than a whole employee. The employee itself is loaded again when it is needed.
+    private Integer loggedInUserId;
+    private Integer loggedInRoleId;
+    private transient Employee loggedInUser;
 
     /**
      * This method is called when login is clicked.
@@ -43,9 +51,21 @@ public class LoginManager implements Serializable {
      * @return none
      */
     public void loginClicked() {
-        loggedInUser = dbFacade.getUserFromDatabase(username, password);
+        Employee user = null;
+        // A username that has failed too many times recently is turned away without checking the password.
+        if (!loginAttemptCache.isBlocked(username)) {
+            user = dbFacade.getUserFromDatabase(username, password);
+            if (user != null) {
+                loginAttemptCache.recordSuccess(username);
+            } else {
+                loginAttemptCache.recordFailure(username);
+            }
+        }
+        // The password is not kept in the session once it has been checked.
+        password = null;
         // Checks if the information the user entered is already stored in the database (if not getUserFromDatabase will return null).
-        if (loggedInUser != null) {
+        if (user != null) {
+            setLoggedInUser(user);
             ExternalContext context = FacesContext.getCurrentInstance().getExternalContext();
             //redirects to the dashboard or displays an error if there is an exception.
             try {
@@ -71,20 +91,30 @@ public class LoginManager implements Serializable {
      * @return none
      */
     public void logoutClicked() {
-        loggedInUser = null;
+        setLoggedInUser(null);
     }
 
     /**
      * @return boolean is there a user logged in?
      */
     public Boolean getLoggedIn() {
-        if (loggedInUser != null) {
+        if (loggedInUserId != null) {
             return true;
         } else {
             return false;
         }
     }
 
+    /**
+     * @return boolean is the logged in user a manager or a superuser?
+     */
+    public Boolean getManager() {
+        if (loggedInRoleId == null) {
+            return false;
+        }
+        return loggedInRoleId == Constants.ROLE_MANAGER_ID || loggedInRoleId == Constants.ROLE_SUPERUSER_ID;
+    }
+
     //////// Getters and Setters ////////
     
     /**
@@ -116,9 +146,12 @@ public class LoginManager implements Serializable {
     }
 
     /**
-     * @return the loggedInUser
+     * @return the loggedInUser, loaded from the database again if the session has been passivated since it was read.
      */
     public Employee getLoggedInUser() {
+        if (loggedInUser == null && loggedInUserId != null) {
+            loggedInUser = dbFacade.getEntity(Employee.class, loggedInUserId);
+        }
         return loggedInUser;
     }
 
@@ -127,6 +160,22 @@ public class LoginManager implements Serializable {
      */
     public void setLoggedInUser(Employee loggedInUser) {
         this.loggedInUser = loggedInUser;
+        this.loggedInUserId = loggedInUser != null ? loggedInUser.getEmployeeid() : null;
+        this.loggedInRoleId = loggedInUser != null ? loggedInUser.getRoleid().getRoleid() : null;
+    }
+
+    /**
+     * @return the id of the logged in user
+     */
+    public Integer getLoggedInUserId() {
+        return loggedInUserId;
+    }
+
+    /**
+     * @return the role id of the logged in user
+     */
+    public Integer getLoggedInRoleId() {
+        return loggedInRoleId;
     }
 
 }
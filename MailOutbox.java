@@ -0,0 +1,334 @@
+package com.smylay.hr;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.Singleton;
+import javax.ejb.Startup;
+import javax.enterprise.concurrent.ManagedThreadFactory;
+import javax.mail.Message;
+import javax.mail.MessagingException;
+import javax.mail.PasswordAuthentication;
+import javax.mail.Session;
+import javax.mail.Transport;
+import org.jboss.logging.Logger;
+
+// The mail outbox sends emails in the background so the user never has to wait for the mail server.
+// Messages are put on a queue and a few worker threads take them off and send them. Every worker keeps its connection
+// to the mail server open between messages and sends several messages each time it connects.
+// Each message is tried once. If it fails the caller is told straight away and the outbox table decides when to try it
+// again, so a worker never sleeps on a message while the rows behind it wait. Every call to the mail server has a
+// timeout so a server that does not answer cannot hold a worker for long either.
+// "Singleton" means there is only one outbox for the whole application. "Startup" starts the workers when the
+// application starts. Bean concurrency means many users can add messages at the same time.
+@Singleton
+@Startup
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+public class MailOutbox {
+
+    private static final Logger log = Logger.getLogger(MailOutbox.class);
+
+    // The mail server can be changed with system properties, e.g. to point at a local test mail server.
+    private static final String MAIL_SERVER_PROPERTY = "searchpointhr.mail.server";
+    private static final String MAIL_SERVER_PORT_PROPERTY = "searchpointhr.mail.port";
+
+    // Used to create the worker threads in a way the application server can manage.
+    @Resource
+    ManagedThreadFactory threadFactory;
+
+    private Session session;
+    private BlockingQueue<OutgoingMail> queue;
+    private final List<Thread> workers = new ArrayList<Thread>();
+    private volatile boolean running;
+
+    private final AtomicLong sentCount = new AtomicLong();
+    private final AtomicLong failedCount = new AtomicLong();
+    private final AtomicLong rejectedCount = new AtomicLong();
+    private final AtomicLong totalLatencyMillis = new AtomicLong();
+    private volatile long maxLatencyMillis;
+
+    /**
+     * This method sets up the mail session and starts the worker threads when the application starts.
+     *
+     * @param none
+     *
+     * @return none
+     */
+    @PostConstruct
+    public void init() {
+        session = setupMailServer();
+        queue = new ArrayBlockingQueue<OutgoingMail>(Constants.MAIL_QUEUE_CAPACITY);
+        running = true;
+        for (int i = 0; i < Constants.MAIL_WORKER_THREADS; i++) {
+            Thread worker = threadFactory.newThread(new Worker());
+            worker.setName("mail-outbox-" + i);
+            workers.add(worker);
+            worker.start();
+        }
+    }
+
+    /**
+     * This method stops the worker threads when the application stops.
+     *
+     * @param none
+     *
+     * @return none
+     */
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        for (Thread worker : workers) {
+            worker.interrupt();
+        }
+        log.info("Mail outbox stopped with " + queue.size() + " messages unsent. Sent " + sentCount.get() + ", failed " + failedCount.get());
+    }
+
+    /**
+     * This method adds a message to the queue to be sent. It returns straight away.
+     *
+     * @param msg the message to send.
+     *
+     * @return true if the message was queued, false if the queue is full.
+     */
+    public boolean enqueue(Message msg) {
+        return enqueue(msg, null);
+    }
+
+    /**
+     * This method adds a message to the queue to be sent, and tells the listener once it has been sent or has failed.
+     * It returns straight away.
+     *
+     * @param msg the message to send.
+     * @param listener told the outcome on the worker thread, or null.
+     *
+     * @return true if the message was queued, false if the queue is full.
+     */
+    public boolean enqueue(Message msg, DeliveryListener listener) {
+        try {
+            // Works out the message headers now, as the workers send it without going through Transport.send.
+            msg.saveChanges();
+        } catch (MessagingException e) {
+            log.error("Failed to prepare message", e);
+            return false;
+        }
+        if (!queue.offer(new OutgoingMail(msg, listener))) {
+            rejectedCount.incrementAndGet();
+            log.error("Mail queue is full, message dropped");
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return the mail session shared by every message.
+     */
+    public Session getSession() {
+        return session;
+    }
+
+    /**
+     * A utility method to set up the mail server.
+     *
+     * @param none
+     *
+     * @return the mail session.
+     */
+    private static Session setupMailServer() {
+        Properties mailProps = new Properties();
+        mailProps.put("mail.smtp.host", System.getProperty(MAIL_SERVER_PROPERTY, Constants.MAIL_SERVER));
+        mailProps.put("mail.smtp.auth", "true");
+        mailProps.put("mail.smtp.port", System.getProperty(MAIL_SERVER_PORT_PROPERTY, String.valueOf(Constants.MAIL_SERVER_PORT)));
+        mailProps.put("mail.smtp.connectiontimeout", String.valueOf(Constants.MAIL_TIMEOUT_MILLIS));
+        mailProps.put("mail.smtp.timeout", String.valueOf(Constants.MAIL_TIMEOUT_MILLIS));
+        mailProps.put("mail.smtp.writetimeout", String.valueOf(Constants.MAIL_TIMEOUT_MILLIS));
+
+        // Use authentication.
+        Session session = Session.getInstance(mailProps, new javax.mail.Authenticator() {
+            @Override
+            protected PasswordAuthentication getPasswordAuthentication() {
+                return new PasswordAuthentication(Constants.MAIL_SERVER_USERNAME, Constants.MAIL_SERVER_PASSWORD);
+            }
+        });
+        return session;
+    }
+
+    //////// Metrics ////////
+    /**
+     * @return the number of messages waiting to be sent.
+     */
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    /**
+     * @return the number of messages that can be added before the queue is full.
+     */
+    public int getFreeCapacity() {
+        return queue.remainingCapacity();
+    }
+
+    /**
+     * @return the number of messages sent.
+     */
+    public long getSentCount() {
+        return sentCount.get();
+    }
+
+    /**
+     * @return the number of messages that could not be sent.
+     */
+    public long getFailedCount() {
+        return failedCount.get();
+    }
+
+    /**
+     * @return the number of messages dropped because the queue was full.
+     */
+    public long getRejectedCount() {
+        return rejectedCount.get();
+    }
+
+    /**
+     * @return the average time in milliseconds from a message being queued to it being sent.
+     */
+    public long getAverageLatencyMillis() {
+        long sent = sentCount.get();
+        return sent == 0 ? 0 : totalLatencyMillis.get() / sent;
+    }
+
+    /**
+     * @return the longest time in milliseconds from a message being queued to it being sent.
+     */
+    public long getMaxLatencyMillis() {
+        return maxLatencyMillis;
+    }
+
+    // Told whether a queued message was sent or not.
+    public interface DeliveryListener {
+
+        void delivered();
+
+        void failed(Exception e);
+    }
+
+    // A message on the queue along with the time it was queued.
+    private static class OutgoingMail {
+
+        private final Message message;
+        private final DeliveryListener listener;
+        private final long queuedAt;
+
+        OutgoingMail(Message message, DeliveryListener listener) {
+            this.message = message;
+            this.listener = listener;
+            this.queuedAt = System.currentTimeMillis();
+        }
+    }
+
+    // A worker takes messages off the queue and sends them over its own connection to the mail server.
+    private class Worker implements Runnable {
+
+        private Transport transport;
+
+        @Override
+        public void run() {
+            List<OutgoingMail> batch = new ArrayList<OutgoingMail>();
+            try {
+                while (running) {
+                    OutgoingMail first = queue.poll(Constants.MAIL_IDLE_MILLIS, TimeUnit.MILLISECONDS);
+                    if (first == null) {
+                        // Nothing to send for a while, so the connection is closed rather than left for the server to drop.
+                        close();
+                        continue;
+                    }
+                    batch.add(first);
+                    queue.drainTo(batch, Constants.MAIL_BATCH_SIZE - 1);
+                    for (OutgoingMail mail : batch) {
+                        send(mail);
+                    }
+                    batch.clear();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                close();
+            }
+        }
+
+        // Sends one message, connecting first if needed. If a connection kept open from earlier messages has been
+        // dropped by the server the message is sent again straight away over a new one; any other failure is passed
+        // back to the caller without waiting.
+        private void send(OutgoingMail mail) {
+            boolean reused = transport != null;
+            try {
+                sendOnce(mail);
+            } catch (MessagingException e) {
+                close();
+                MessagingException failure = e;
+                if (reused) {
+                    try {
+                        sendOnce(mail);
+                        return;
+                    } catch (MessagingException retryFailure) {
+                        close();
+                        failure = retryFailure;
+                    }
+                }
+                failedCount.incrementAndGet();
+                log.warn("Failed to send: " + failure.getMessage());
+                notifyListener(mail, failure);
+            }
+        }
+
+        private void sendOnce(OutgoingMail mail) throws MessagingException {
+            if (transport == null || !transport.isConnected()) {
+                transport = session.getTransport("smtp");
+                transport.connect();
+            }
+            transport.sendMessage(mail.message, mail.message.getAllRecipients());
+            long latency = System.currentTimeMillis() - mail.queuedAt;
+            sentCount.incrementAndGet();
+            totalLatencyMillis.addAndGet(latency);
+            if (latency > maxLatencyMillis) {
+                maxLatencyMillis = latency;
+            }
+            notifyListener(mail, null);
+        }
+
+        // Tells the message's listener the outcome. A failing listener must not stop the worker.
+        private void notifyListener(OutgoingMail mail, Exception failure) {
+            if (mail.listener == null) {
+                return;
+            }
+            try {
+                if (failure == null) {
+                    mail.listener.delivered();
+                } else {
+                    mail.listener.failed(failure);
+                }
+            } catch (RuntimeException e) {
+                log.error("Mail delivery listener failed", e);
+            }
+        }
+
+        private void close() {
+            if (transport != null) {
+                try {
+                    transport.close();
+                } catch (MessagingException e) {
+                    log.debug("Error closing mail connection", e);
+                }
+                transport = null;
+            }
+        }
+    }
+}
@@ -2,131 +2,96 @@ package com.smylay.hr;
 
 import com.smylay.hr.model.Absence;
 import com.smylay.hr.model.Employee;
+import com.smylay.hr.model.OutboxMessage;
+import java.text.SimpleDateFormat;
 import java.util.List;
-import java.util.Properties;
-import javax.mail.Address;
-import javax.mail.Message;
-import javax.mail.Session;
-import javax.mail.Transport;
-import javax.mail.internet.MimeMessage;
-import javax.mail.PasswordAuthentication;
-import javax.mail.internet.InternetAddress;
-import org.jboss.logging.Logger;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
 
 // This bean is used to send users emails.
+// The emails are written to the outbox table in the same transaction as the change they are about. The outbox drainer
+// sends them in the background, so the user does not have to wait and nothing is sent for a change that was not saved.
+// "ApplicationScoped" details how long the state is saved. in this case for the duration that the application is running.
+@ApplicationScoped
 public class MailSenderBean {
 
-    private static final Logger log = Logger.getLogger(MailSenderBean.class);
+    // Here I inject different beans. DBFacade handles database interaction.
+    @Inject
+    DBFacade dbFacade;
 
     /**
      * Sends an email to the managers to inform them of a new absence request.
      *
-     * @param managers = list of managers
+     * @param managers = the email addresses of the managers (see RecipientResolver)
      * @param employee = the employee requesting the absence
      *
      * @return none
      */
-    public static void sendNewRequestEmail(List<Employee> managers, Employee employee) {
-        // Setup the mail server and create a new message.
-        Session session = setupMailServer();
-        Message msg = new MimeMessage(session);
-
-        try {
-            // Setup from address.
-            msg.setFrom(new InternetAddress(Constants.FROM_EMAIL_ADDRESS));
-
-            // iterate over all managers to add them as recipients.
-            for (Employee thisEmployee : managers) {
-
-                //Create an internet address for each manager.
-                Address addr = new InternetAddress(thisEmployee.getEmail());
-
-                // Add to the recipient list.
-                msg.addRecipient(Message.RecipientType.TO, addr);
+    public void sendNewRequestEmail(List<String> managers, Employee employee) {
+        // iterate over all managers to add them as recipients. The employee is not sent their own request.
+        StringBuilder recipients = new StringBuilder();
+        for (String thisAddress : managers) {
+            if (thisAddress.isEmpty() || thisAddress.equals(employee.getEmail())) {
+                continue;
             }
-
-            // Set the subject
-            msg.setSubject("New Absence Request");
-
-            // Set the content of the email.
-            msg.setContent("A new absence has been requested by " + employee.getName(), "text/html");
-
-            // Send the message
-            Transport.send(msg);
-
-        } catch (Exception e) {
-
-            log.error("Failed to send", e);
-
+            if (recipients.length() > 0) {
+                recipients.append(',');
+            }
+            recipients.append(thisAddress);
+        }
+        if (recipients.length() == 0) {
+            return;
         }
 
+        // Set the subject and the content of the email and save it to the outbox.
+        dbFacade.saveOutboxMessage(new OutboxMessage(recipients.toString(), "New Absence Request",
+                "A new absence has been requested by " + employee.getName()));
     }
 
     /**
      * Sends an email an employee to inform them of the approval status of their absence request.
      *
-     * @param managers = list of managers
-     * @param employee = the employee requesting the absence
+     * @param employee = the employee who requested the absence
+     * @param absence = the absence that was approved or denied
      *
      * @return none
      */
-    public static void sendApprovedRequestMailer(Employee employee, Absence absence) {
-        // Setup the mail server and create a new message.
-        Session session = setupMailServer();
-        Message msg = new MimeMessage(session);
-
-        try {
-            // Setup from address.
-            msg.setFrom(new InternetAddress(Constants.FROM_EMAIL_ADDRESS));
-
-            // Create an internet address for the employee and add as a recipient.
-            Address addr = new InternetAddress(employee.getEmail());
-            msg.addRecipient(Message.RecipientType.TO, addr);
-
-            // Set the subject.
-            msg.setSubject("Absence Request Update");
-
-            // Set the content
-            String defaultMsg = " your absence request has ";
-            String approved;
-            if (absence.getApproved()) {
-                approved = "been approved";
-            } else {
-                approved = "been denied";
-            }
-            msg.setContent(employee.getName() + defaultMsg + approved, "text/html");
-
-            // Send the message.
-            Transport.send(msg);
-
-        } catch (Exception e) {
-
-            log.error("Failed to send", e);
-
+    public void sendApprovedRequestMailer(Employee employee, Absence absence) {
+        // Set the content
+        String defaultMsg = " your absence request has ";
+        String approved;
+        if (absence.getApproved()) {
+            approved = "been approved";
+        } else {
+            approved = "been denied";
         }
+
+        // Save the email to the outbox, addressed to the employee.
+        dbFacade.saveOutboxMessage(new OutboxMessage(employee.getEmail(), "Absence Request Update",
+                employee.getName() + defaultMsg + approved));
     }
 
     /**
-     * A utility method to set up the mail server.
+     * Sends one email to an employee listing all of their absence requests that have just been approved or denied,
+     * instead of one email for each request.
      *
-     * @param none
+     * @param employee = the employee who requested the absences
+     * @param absences = the absences that were approved or denied
      *
-     * @return the mail session.
+     * @return none
      */
-    private static Session setupMailServer() {
-        Properties mailProps = new Properties();
-        mailProps.put("mail.smtp.host", Constants.MAIL_SERVER);
-        mailProps.put("mail.smtp.auth", "true");
-        mailProps.put("mail.smtp.port", Constants.MAIL_SERVER_PORT);
+    public void sendRequestDigest(Employee employee, List<Absence> absences) {
+        SimpleDateFormat format = new SimpleDateFormat("dd/MM/yyyy");
+        StringBuilder content = new StringBuilder(employee.getName()).append(" your absence requests have been updated:");
+        for (Absence thisAbsence : absences) {
+            content.append("\n").append(thisAbsence.getReasonid().getName())
+                    .append(" from ").append(format.format(thisAbsence.getStartdate()))
+                    .append(" to ").append(format.format(thisAbsence.getEnddate()))
+                    .append(thisAbsence.getApproved() ? " has been approved" : " has been denied");
+        }
 
-        // Use authentication.
-        Session session = Session.getInstance(mailProps, new javax.mail.Authenticator() {
-            @Override
-            protected PasswordAuthentication getPasswordAuthentication() {
-                return new PasswordAuthentication(Constants.MAIL_SERVER_USERNAME, Constants.MAIL_SERVER_PASSWORD);
-            }
-        });
-        return session;
+        // Save the email to the outbox, addressed to the employee.
+        dbFacade.saveOutboxMessage(new OutboxMessage(employee.getEmail(), "Absence Request Update", content.toString()));
     }
 
 }
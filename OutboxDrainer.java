@@ -0,0 +1,138 @@
+package com.smylay.hr;
+
+import com.smylay.hr.model.OutboxMessage;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.Schedule;
+import javax.ejb.Singleton;
+import javax.ejb.TransactionAttribute;
+import javax.ejb.TransactionAttributeType;
+import javax.inject.Inject;
+import javax.mail.Message;
+import javax.mail.internet.InternetAddress;
+import javax.mail.internet.MimeMessage;
+import org.jboss.logging.Logger;
+
+// The outbox drainer sends the emails waiting in the outbox table.
+// Every few seconds it claims a batch of unsent rows, hands them to the mail outbox and marks each row as sent once the
+// mail server has accepted it, or as failed (with a later time to try again) if it has not. The outbox table is the only
+// place emails are retried. A claimed row that is never marked (e.g. the server restarted) is picked up again once its
+// claim runs out, so after an outage the backlog is simply sent late rather than lost.
+// No more than OUTBOX_BATCH_SIZE rows are ever waiting in the mail outbox at once. Each is tried once with a timeout, so
+// they are all sent or failed well before their claim runs out and no row is claimed (and sent) twice.
+// "Singleton" means there is only one drainer for the whole application. Each database call goes through DBFacade in a
+// transaction of its own.
+@Singleton
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+public class OutboxDrainer {
+
+    private static final Logger log = Logger.getLogger(OutboxDrainer.class);
+
+    // Here I inject different beans. DBFacade handles database interaction. MailOutbox sends the emails.
+    @Inject
+    DBFacade dbFacade;
+    @Inject
+    MailOutbox mailOutbox;
+
+    // The number of claimed rows handed to the mail outbox that have not yet been marked sent or failed.
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    /**
+     * This method runs every ten seconds and sends the next batch of waiting emails.
+     *
+     * @param none
+     *
+     * @return none
+     */
+    @Schedule(second = "*/10", minute = "*", hour = "*", persistent = false)
+    @TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+    public void drain() {
+        // Only claims as many rows as can be queued now without going over the limit of rows waiting to be sent.
+        int room = Math.min(mailOutbox.getFreeCapacity(), Constants.OUTBOX_BATCH_SIZE - inFlight.get());
+        if (room <= 0) {
+            return;
+        }
+        // The claim is committed before anything is queued, so a row can never be marked sent and then overwritten.
+        List<OutboxMessage> batch = dbFacade.claimOutboxBatch(room);
+        for (OutboxMessage thisMessage : batch) {
+            final Integer outboxid = thisMessage.getOutboxid();
+            try {
+                Message msg = new MimeMessage(mailOutbox.getSession());
+                msg.setFrom(new InternetAddress(Constants.FROM_EMAIL_ADDRESS));
+                msg.setRecipients(Message.RecipientType.TO, InternetAddress.parse(thisMessage.getRecipients()));
+                msg.setSubject(thisMessage.getSubject());
+                msg.setContent(thisMessage.getBody(), "text/html");
+                final int attempts = thisMessage.getAttempts();
+                inFlight.incrementAndGet();
+                boolean queued = mailOutbox.enqueue(msg, new MailOutbox.DeliveryListener() {
+                    @Override
+                    public void delivered() {
+                        inFlight.decrementAndGet();
+                        markSent(outboxid);
+                    }
+
+                    @Override
+                    public void failed(Exception e) {
+                        inFlight.decrementAndGet();
+                        markFailed(outboxid, attempts, e);
+                    }
+                });
+                if (!queued) {
+                    // The row is put back now rather than left until its claim runs out.
+                    inFlight.decrementAndGet();
+                    markFailed(outboxid, attempts, new IllegalStateException("Mail queue is full"));
+                }
+            } catch (Exception e) {
+                // A message that cannot even be built (e.g. a bad address) is put back with the error recorded.
+                markFailed(outboxid, thisMessage.getAttempts(), e);
+            }
+        }
+        if (!batch.isEmpty()) {
+            log.info("Outbox drainer queued " + batch.size() + " emails");
+        }
+    }
+
+    /**
+     * This method records that an email has been sent.
+     *
+     * @param outboxid the id of the email.
+     *
+     * @return none
+     */
+    public void markSent(Integer outboxid) {
+        dbFacade.markOutboxSent(outboxid);
+    }
+
+    /**
+     * This method records that an email could not be sent, and when to try it again. The wait doubles with every
+     * attempt up to a maximum.
+     *
+     * @param outboxid the id of the email.
+     * @param attempts the number of times it has been tried.
+     * @param e the reason it failed.
+     *
+     * @return none
+     */
+    public void markFailed(Integer outboxid, int attempts, Exception e) {
+        long wait = Math.min(Constants.OUTBOX_MAX_BACKOFF_MILLIS, Constants.MAIL_RETRY_BACKOFF_MILLIS << Math.min(attempts, 20));
+        String error = String.valueOf(e.getMessage());
+        if (error.length() > 500) {
+            error = error.substring(0, 500);
+        }
+        dbFacade.markOutboxFailed(outboxid, new Date(System.currentTimeMillis() + wait), error);
+    }
+
+    /**
+     * This method makes every unsent email due straight away, e.g. once the mail server is back after an outage.
+     *
+     * @param none
+     *
+     * @return the number of emails that will be retried.
+     */
+    public int replayUnsent() {
+        return dbFacade.replayOutbox();
+    }
+}
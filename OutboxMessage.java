@@ -0,0 +1,185 @@
+package com.smylay.hr.model;
+
+import java.io.Serializable;
+import java.util.Date;
+import javax.persistence.Basic;
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.NamedQueries;
+import javax.persistence.NamedQuery;
+import javax.persistence.Table;
+import javax.persistence.Temporal;
+import javax.persistence.TemporalType;
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Size;
+import javax.xml.bind.annotation.XmlRootElement;
+
+// This is an entity class that allows the system to access and interact with my database table Outbox.
+// Each row is an email waiting to be sent. Rows are written in the same transaction as the change they are about, so an
+// email is only sent if the change was saved, and it is not lost if the mail server is down.
+
+@Entity
+@Table(name = "outbox", indexes = {
+    @Index(name = "idx_outbox_pending", columnList = "sentat, nextattempt")})
+@XmlRootElement
+@NamedQueries({
+    @NamedQuery(name = "OutboxMessage.findPending", query = "SELECT o FROM OutboxMessage o WHERE o.sentat IS NULL AND o.nextattempt <= :now ORDER BY o.outboxid")
+    , @NamedQuery(name = "OutboxMessage.markSent", query = "UPDATE OutboxMessage o SET o.sentat = :now WHERE o.outboxid = :outboxid")
+    , @NamedQuery(name = "OutboxMessage.markFailed", query = "UPDATE OutboxMessage o SET o.nextattempt = :nextattempt, o.lasterror = :lasterror WHERE o.outboxid = :outboxid AND o.sentat IS NULL")
+    , @NamedQuery(name = "OutboxMessage.replayUnsent", query = "UPDATE OutboxMessage o SET o.nextattempt = :now WHERE o.sentat IS NULL")})
+public class OutboxMessage implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Basic(optional = false)
+    @Column(name = "outboxid")
+    private Integer outboxid;
+    @Basic(optional = false)
+    @NotNull
+    @Size(min = 1, max = 2000)
+    @Column(name = "recipients")
+    private String recipients;
+    @Basic(optional = false)
+    @NotNull
+    @Size(min = 1, max = 200)
+    @Column(name = "subject")
+    private String subject;
+    @Basic(optional = false)
+    @NotNull
+    @Size(max = 4000)
+    @Column(name = "body")
+    private String body;
+    @Basic(optional = false)
+    @NotNull
+    @Column(name = "createdat")
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date createdat;
+    @Basic(optional = false)
+    @NotNull
+    @Column(name = "nextattempt")
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date nextattempt;
+    @Column(name = "sentat")
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date sentat;
+    @Basic(optional = false)
+    @NotNull
+    @Column(name = "attempts")
+    private int attempts;
+    @Size(max = 500)
+    @Column(name = "lasterror")
+    private String lasterror;
+
+    public OutboxMessage() {
+    }
+
+    public OutboxMessage(String recipients, String subject, String body) {
+        this.recipients = recipients;
+        this.subject = subject;
+        this.body = body;
+        this.createdat = new Date();
+        this.nextattempt = this.createdat;
+    }
+
+    public Integer getOutboxid() {
+        return outboxid;
+    }
+
+    public void setOutboxid(Integer outboxid) {
+        this.outboxid = outboxid;
+    }
+
+    public String getRecipients() {
+        return recipients;
+    }
+
+    public void setRecipients(String recipients) {
+        this.recipients = recipients;
+    }
+
+    public String getSubject() {
+        return subject;
+    }
+
+    public void setSubject(String subject) {
+        this.subject = subject;
+    }
+
+    public String getBody() {
+        return body;
+    }
+
+    public void setBody(String body) {
+        this.body = body;
+    }
+
+    public Date getCreatedat() {
+        return createdat;
+    }
+
+    public void setCreatedat(Date createdat) {
+        this.createdat = createdat;
+    }
+
+    public Date getNextattempt() {
+        return nextattempt;
+    }
+
+    public void setNextattempt(Date nextattempt) {
+        this.nextattempt = nextattempt;
+    }
+
+    public Date getSentat() {
+        return sentat;
+    }
+
+    public void setSentat(Date sentat) {
+        this.sentat = sentat;
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    public void setAttempts(int attempts) {
+        this.attempts = attempts;
+    }
+
+    public String getLasterror() {
+        return lasterror;
+    }
+
+    public void setLasterror(String lasterror) {
+        this.lasterror = lasterror;
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = 0;
+        hash += (outboxid != null ? outboxid.hashCode() : 0);
+        return hash;
+    }
+
+    @Override
+    public boolean equals(Object object) {
+        if (!(object instanceof OutboxMessage)) {
+            return false;
+        }
+        OutboxMessage other = (OutboxMessage) object;
+        if ((this.outboxid == null && other.outboxid != null) || (this.outboxid != null && !this.outboxid.equals(other.outboxid))) {
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return "com.smylay.hr.model.OutboxMessage[ outboxid=" + outboxid + " ]";
+    }
+
+}
@@ -0,0 +1,248 @@
+package com.smylay.hr;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.concurrent.Semaphore;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+
+// The password hasher turns passwords into hashes that can be stored in the database, and checks a password against a
+// stored hash. It uses scrypt (RFC 7914), which needs a large block of memory for every hash, so guessing passwords
+// with special hardware is expensive. The cost is stored in each hash, so the cost can be raised later without
+// breaking old hashes; they are simply upgraded the next time the user logs in.
+// Stored hashes look like "$scrypt$N$r$p$salt$hash" with the salt and hash in base 64.
+// The cost can be tuned with the system properties searchpointhr.scrypt.n, searchpointhr.scrypt.r and searchpointhr.scrypt.p.
+public final class PasswordHasher {
+
+    private static final String PREFIX = "$scrypt$";
+    private static final int SALT_BYTES = 16;
+    private static final int HASH_BYTES = 32;
+
+    private static final int N = Integer.getInteger("searchpointhr.scrypt.n", Constants.SCRYPT_N);
+    private static final int R = Integer.getInteger("searchpointhr.scrypt.r", Constants.SCRYPT_R);
+    private static final int P = Integer.getInteger("searchpointhr.scrypt.p", Constants.SCRYPT_P);
+
+    // Each hash uses 128 * N * r bytes, so only one hash per processor is worked out at a time. More at once would not
+    // be any faster, it would just use more memory when everyone logs in at the start of a shift.
+    private static final Semaphore PERMITS = new Semaphore(Runtime.getRuntime().availableProcessors(), true);
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    // Checked when a username does not exist, so an unknown username takes as long to reject as a wrong password.
+    private static final String DUMMY_HASH = hash("searchpointhr-dummy-password");
+
+    private PasswordHasher() {
+    }
+
+    /**
+     * This method hashes a password with a new random salt using the current cost.
+     *
+     * @param password the password to hash.
+     *
+     * @return the hash to store in the database.
+     */
+    public static String hash(String password) {
+        byte[] salt = new byte[SALT_BYTES];
+        RANDOM.nextBytes(salt);
+        byte[] hash = scrypt(password, salt, N, R, P, HASH_BYTES);
+        Base64.Encoder encoder = Base64.getEncoder();
+        return PREFIX + N + "$" + R + "$" + P + "$" + encoder.encodeToString(salt) + "$" + encoder.encodeToString(hash);
+    }
+
+    /**
+     * This method checks a password against a stored value. A stored value that is not a hash is an old plain text
+     * password and is compared as it is.
+     *
+     * @param password the password the user entered.
+     * @param stored the value stored in the database, or null if there is no such user.
+     *
+     * @return Boolean does the password match?
+     */
+    public static boolean verify(String password, String stored) {
+        if (password == null || password.isEmpty()) {
+            return false;
+        }
+        if (stored == null) {
+            // Does the same work as a real check so the time taken does not show whether the username exists.
+            verify(password, DUMMY_HASH);
+            return false;
+        }
+        if (!isHashed(stored)) {
+            return MessageDigest.isEqual(password.getBytes(StandardCharsets.UTF_8), stored.getBytes(StandardCharsets.UTF_8));
+        }
+        String[] parts = stored.substring(PREFIX.length()).split("\\$");
+        if (parts.length != 5) {
+            return false;
+        }
+        Base64.Decoder decoder = Base64.getDecoder();
+        byte[] expected = decoder.decode(parts[4]);
+        byte[] actual = scrypt(password, decoder.decode(parts[3]), Integer.parseInt(parts[0]), Integer.parseInt(parts[1]),
+                Integer.parseInt(parts[2]), expected.length);
+        return MessageDigest.isEqual(expected, actual);
+    }
+
+    /**
+     * This method checks whether a stored value should be hashed again, because it is plain text or was hashed with a
+     * different cost than the current one.
+     *
+     * @param stored the value stored in the database.
+     *
+     * @return Boolean should it be replaced with a new hash?
+     */
+    public static boolean needsRehash(String stored) {
+        return !isHashed(stored) || !stored.startsWith(PREFIX + N + "$" + R + "$" + P + "$");
+    }
+
+    /**
+     * @param stored the value stored in the database.
+     *
+     * @return Boolean is it a scrypt hash rather than a plain text password?
+     */
+    public static boolean isHashed(String stored) {
+        return stored != null && stored.startsWith(PREFIX);
+    }
+
+    /**
+     * This method works out scrypt as set out in RFC 7914.
+     *
+     * @param password the password.
+     * @param salt the salt.
+     * @param n the cost (a power of 2). Memory used is 128 * n * r bytes.
+     * @param r the block size.
+     * @param p the number of times the memory-hard part is done.
+     * @param length the number of bytes to return.
+     *
+     * @return the derived key.
+     */
+    static byte[] scrypt(String password, byte[] salt, int n, int r, int p, int length) {
+        if (n < 2 || (n & (n - 1)) != 0) {
+            throw new IllegalArgumentException("N must be a power of 2 greater than 1");
+        }
+        PERMITS.acquireUninterruptibly();
+        try {
+            int blockSize = 128 * r;
+            byte[] b = pbkdf2(password, salt, p * blockSize);
+            byte[] xy = new byte[2 * blockSize];
+            byte[] v = new byte[n * blockSize];
+            for (int i = 0; i < p; i++) {
+                smix(b, i * blockSize, r, n, v, xy);
+            }
+            return pbkdf2(password, b, length);
+        } finally {
+            PERMITS.release();
+        }
+    }
+
+    // PBKDF2 with HMAC-SHA256 and a single iteration, as used by scrypt either side of the memory-hard part.
+    private static byte[] pbkdf2(String password, byte[] salt, int length) {
+        PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), salt, 1, length * 8);
+        try {
+            return SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256").generateSecret(spec).getEncoded();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("PBKDF2WithHmacSHA256 is not available", e);
+        } finally {
+            spec.clearPassword();
+        }
+    }
+
+    // ROMix: fills v with n successive block mixes of the block, then mixes the block with n pseudo-random entries of v.
+    private static void smix(byte[] b, int bi, int r, int n, byte[] v, byte[] xy) {
+        int blockSize = 128 * r;
+        System.arraycopy(b, bi, xy, 0, blockSize);
+        for (int i = 0; i < n; i++) {
+            System.arraycopy(xy, 0, v, i * blockSize, blockSize);
+            blockMix(xy, r);
+        }
+        for (int i = 0; i < n; i++) {
+            int j = integerify(xy, r) & (n - 1);
+            xor(v, j * blockSize, xy, 0, blockSize);
+            blockMix(xy, r);
+        }
+        System.arraycopy(xy, 0, b, bi, blockSize);
+    }
+
+    // BlockMix with Salsa20/8. The block is at the start of xy and the second half of xy is used as working space.
+    private static void blockMix(byte[] xy, int r) {
+        int yi = 128 * r;
+        byte[] x = new byte[64];
+        System.arraycopy(xy, (2 * r - 1) * 64, x, 0, 64);
+        for (int i = 0; i < 2 * r; i++) {
+            xor(xy, i * 64, x, 0, 64);
+            salsa208(x);
+            System.arraycopy(x, 0, xy, yi + i * 64, 64);
+        }
+        // The even blocks go in the first half and the odd blocks in the second half.
+        for (int i = 0; i < r; i++) {
+            System.arraycopy(xy, yi + (2 * i) * 64, xy, i * 64, 64);
+            System.arraycopy(xy, yi + (2 * i + 1) * 64, xy, (i + r) * 64, 64);
+        }
+    }
+
+    // Reads the first 4 bytes of the last 64 byte block as a little-endian int.
+    private static int integerify(byte[] xy, int r) {
+        int i = (2 * r - 1) * 64;
+        return (xy[i] & 0xff) | (xy[i + 1] & 0xff) << 8 | (xy[i + 2] & 0xff) << 16 | (xy[i + 3] & 0xff) << 24;
+    }
+
+    // XORs len bytes of src into dest.
+    private static void xor(byte[] src, int srcPos, byte[] dest, int destPos, int len) {
+        for (int i = 0; i < len; i++) {
+            dest[destPos + i] ^= src[srcPos + i];
+        }
+    }
+
+    // The Salsa20/8 core applied to a 64 byte block in place.
+    private static void salsa208(byte[] block) {
+        int[] in = new int[16];
+        for (int i = 0; i < 16; i++) {
+            in[i] = (block[i * 4] & 0xff) | (block[i * 4 + 1] & 0xff) << 8 | (block[i * 4 + 2] & 0xff) << 16 | (block[i * 4 + 3] & 0xff) << 24;
+        }
+        int[] x = in.clone();
+        for (int i = 0; i < 8; i += 2) {
+            // Columns.
+            x[4] ^= Integer.rotateLeft(x[0] + x[12], 7);
+            x[8] ^= Integer.rotateLeft(x[4] + x[0], 9);
+            x[12] ^= Integer.rotateLeft(x[8] + x[4], 13);
+            x[0] ^= Integer.rotateLeft(x[12] + x[8], 18);
+            x[9] ^= Integer.rotateLeft(x[5] + x[1], 7);
+            x[13] ^= Integer.rotateLeft(x[9] + x[5], 9);
+            x[1] ^= Integer.rotateLeft(x[13] + x[9], 13);
+            x[5] ^= Integer.rotateLeft(x[1] + x[13], 18);
+            x[14] ^= Integer.rotateLeft(x[10] + x[6], 7);
+            x[2] ^= Integer.rotateLeft(x[14] + x[10], 9);
+            x[6] ^= Integer.rotateLeft(x[2] + x[14], 13);
+            x[10] ^= Integer.rotateLeft(x[6] + x[2], 18);
+            x[3] ^= Integer.rotateLeft(x[15] + x[11], 7);
+            x[7] ^= Integer.rotateLeft(x[3] + x[15], 9);
+            x[11] ^= Integer.rotateLeft(x[7] + x[3], 13);
+            x[15] ^= Integer.rotateLeft(x[11] + x[7], 18);
+            // Rows.
+            x[1] ^= Integer.rotateLeft(x[0] + x[3], 7);
+            x[2] ^= Integer.rotateLeft(x[1] + x[0], 9);
+            x[3] ^= Integer.rotateLeft(x[2] + x[1], 13);
+            x[0] ^= Integer.rotateLeft(x[3] + x[2], 18);
+            x[6] ^= Integer.rotateLeft(x[5] + x[4], 7);
+            x[7] ^= Integer.rotateLeft(x[6] + x[5], 9);
+            x[4] ^= Integer.rotateLeft(x[7] + x[6], 13);
+            x[5] ^= Integer.rotateLeft(x[4] + x[7], 18);
+            x[11] ^= Integer.rotateLeft(x[10] + x[9], 7);
+            x[8] ^= Integer.rotateLeft(x[11] + x[10], 9);
+            x[9] ^= Integer.rotateLeft(x[8] + x[11], 13);
+            x[10] ^= Integer.rotateLeft(x[9] + x[8], 18);
+            x[12] ^= Integer.rotateLeft(x[15] + x[14], 7);
+            x[13] ^= Integer.rotateLeft(x[12] + x[15], 9);
+            x[14] ^= Integer.rotateLeft(x[13] + x[12], 13);
+            x[15] ^= Integer.rotateLeft(x[14] + x[13], 18);
+        }
+        for (int i = 0; i < 16; i++) {
+            int value = x[i] + in[i];
+            block[i * 4] = (byte) value;
+            block[i * 4 + 1] = (byte) (value >>> 8);
+            block[i * 4 + 2] = (byte) (value >>> 16);
+            block[i * 4 + 3] = (byte) (value >>> 24);
+        }
+    }
+}
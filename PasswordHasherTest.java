@@ -0,0 +1,48 @@
+package com.smylay.hr;
+
+import java.nio.charset.StandardCharsets;
+import org.junit.Assert;
+import org.junit.Test;
+
+// Checks the password hasher against the test vectors in RFC 7914, so a change to the scrypt code that gives
+// different hashes is caught before any stored passwords stop working.
+public class PasswordHasherTest {
+
+    /**
+     * The second scrypt test vector in RFC 7914 section 12 (password "password", salt "NaCl", N=1024, r=8, p=16).
+     *
+     * @param none
+     *
+     * @return none
+     */
+    @Test
+    public void scryptMatchesRfc7914Vector() {
+        byte[] key = PasswordHasher.scrypt("password", "NaCl".getBytes(StandardCharsets.UTF_8), 1024, 8, 16, 64);
+        Assert.assertEquals("fdbabe1c9d3472007856e7190d01e9fe7c6ad7cbc8237830e77376634b373162"
+                + "2eaf30d92e22a3886ff109279d9830dac727afb94a83ee6d8360cbdfa2cc0640", toHex(key));
+    }
+
+    /**
+     * A hash made by the hasher is accepted for the right password and refused for a wrong one.
+     *
+     * @param none
+     *
+     * @return none
+     */
+    @Test
+    public void verifyChecksThePassword() {
+        String stored = PasswordHasher.hash("correct horse");
+        Assert.assertTrue(PasswordHasher.verify("correct horse", stored));
+        Assert.assertFalse(PasswordHasher.verify("wrong horse", stored));
+        Assert.assertFalse(PasswordHasher.needsRehash(stored));
+    }
+
+    // Writes bytes as lower case hex, the way the RFC prints its test vectors.
+    private static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder();
+        for (byte thisByte : bytes) {
+            hex.append(String.format("%02x", thisByte & 0xff));
+        }
+        return hex.toString();
+    }
+}
@@ -0,0 +1,62 @@
+package com.smylay.hr;
+
+import java.io.Serializable;
+import javax.enterprise.context.SessionScoped;
+import javax.enterprise.event.Observes;
+import javax.enterprise.event.TransactionPhase;
+
+// Read consistency remembers when this user last saved something, so that they always see their own changes.
+// The read replica can be a little behind the main database, so for a short time after a save all of the user's reads
+// go to the main database instead.
+// "SessionScoped" details how long the state is saved. In this case the whole session.
+@SessionScoped
+public class ReadConsistency implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private volatile long lastWriteMillis;
+
+    /**
+     * This method records that the user has just saved something.
+     *
+     * @param none
+     *
+     * @return none
+     */
+    public void recordWrite() {
+        lastWriteMillis = System.currentTimeMillis();
+    }
+
+    /**
+     * This method checks whether the user has saved something recently enough that the replica might not have it yet.
+     *
+     * @param none
+     *
+     * @return Boolean must the user's reads go to the main database?
+     */
+    public boolean hasRecentWrite() {
+        return System.currentTimeMillis() - lastWriteMillis < Constants.READ_REPLICA_LAG_MILLIS;
+    }
+
+    /**
+     * This method is called once an absence saved by this user has been committed.
+     *
+     * @param event the absence that was changed.
+     *
+     * @return none
+     */
+    public void onAbsenceChanged(@Observes(during = TransactionPhase.AFTER_SUCCESS) AbsenceChangedEvent event) {
+        recordWrite();
+    }
+
+    /**
+     * This method is called once a reason, role or holiday saved by this user has been committed.
+     *
+     * @param event the table that was changed.
+     *
+     * @return none
+     */
+    public void onReferenceDataChanged(@Observes(during = TransactionPhase.AFTER_SUCCESS) ReferenceDataChangedEvent event) {
+        recordWrite();
+    }
+}
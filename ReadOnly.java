@@ -0,0 +1,16 @@
+package com.smylay.hr;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import javax.interceptor.InterceptorBinding;
+
+// ReadOnly marks a DBFacade method that only reads and can safely be answered by the read replica
+// (the "searchpointHRReadPU" persistence unit). The ReadOnlyInterceptor decides for each call whether it really goes to
+// the replica or stays on the main database.
+@InterceptorBinding
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.METHOD, ElementType.TYPE})
+public @interface ReadOnly {
+}
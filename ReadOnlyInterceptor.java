@@ -0,0 +1,68 @@
+package com.smylay.hr;
+
+import java.io.Serializable;
+import javax.annotation.Priority;
+import javax.enterprise.context.ContextNotActiveException;
+import javax.enterprise.inject.Instance;
+import javax.inject.Inject;
+import javax.interceptor.AroundInvoke;
+import javax.interceptor.Interceptor;
+import javax.interceptor.InvocationContext;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.PersistenceUnit;
+
+// The read only interceptor sends the reads of methods marked ReadOnly to the read replica.
+// For each call it opens an entity manager on the replica, hands it to DBFacade through ReadRouting and closes it when
+// the method returns, so the entities read are detached just like those from the main database.
+// A user who has saved something in the last few seconds has their reads left on the main database, so they never
+// see the replica without their own changes (read-your-writes). Calls from outside a session, such as timers, always
+// use the replica.
+// The replica unit uses a non-JTA datasource, so its reads never join the caller's transaction.
+@ReadOnly
+@Interceptor
+@Priority(Interceptor.Priority.APPLICATION)
+public class ReadOnlyInterceptor implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    // "PersistenceUnit" gives the factory for entity managers on the read replica.
+    @PersistenceUnit(unitName = "searchpointHRReadPU")
+    EntityManagerFactory readEmf;
+
+    // Here I inject different beans. ReadConsistency remembers when the user last saved something.
+    @Inject
+    Instance<ReadConsistency> readConsistency;
+
+    @AroundInvoke
+    public Object routeRead(InvocationContext ctx) throws Exception {
+        // A read method called by another read method keeps the choice already made.
+        if (ReadRouting.current() != null || !canUseReplica()) {
+            return ctx.proceed();
+        }
+        EntityManager readEm = readEmf.createEntityManager();
+        ReadRouting.set(readEm);
+        try {
+            return ctx.proceed();
+        } finally {
+            ReadRouting.clear();
+            readEm.close();
+        }
+    }
+
+    /**
+     * This method checks whether the current user's reads can go to the replica.
+     *
+     * @param none
+     *
+     * @return Boolean can the replica be used?
+     */
+    private boolean canUseReplica() {
+        try {
+            return !readConsistency.get().hasRecentWrite();
+        } catch (ContextNotActiveException e) {
+            // There is no session, e.g. a timer, so there are no writes of the user's own to wait for.
+            return true;
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.smylay.hr;
+
+import javax.persistence.EntityManager;
+
+// ReadRouting holds the read replica entity manager chosen by the ReadOnlyInterceptor for the current call, so that
+// DBFacade can read through it. It is only set while a ReadOnly method is running.
+final class ReadRouting {
+
+    private static final ThreadLocal<EntityManager> CURRENT = new ThreadLocal<EntityManager>();
+
+    private ReadRouting() {
+    }
+
+    static EntityManager current() {
+        return CURRENT.get();
+    }
+
+    static void set(EntityManager em) {
+        CURRENT.set(em);
+    }
+
+    static void clear() {
+        CURRENT.remove();
+    }
+}
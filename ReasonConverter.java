@@ -19,9 +19,9 @@ import javax.inject.Named;
 @ApplicationScoped
 public class ReasonConverter implements Converter, Serializable {
 
-    // Here I inject different beans. DBFacade handles database interaction.
+    // Here I inject different beans. ReferenceDataCache holds the reasons so no database lookup is needed.
     @Inject
-    DBFacade dbFacade;
+    ReferenceDataCache referenceDataCache;
 
     private static final long serialVersionUID = 1L;
 
@@ -32,7 +32,7 @@ public class ReasonConverter implements Converter, Serializable {
         } else {
             try {
                 int id = Integer.parseInt(submittedValue);
-                Reason r = dbFacade.getEntity(Reason.class, id);
+                Reason r = referenceDataCache.getReason(id);
                 return r;
             } catch (NumberFormatException ex) {
 
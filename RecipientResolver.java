@@ -0,0 +1,93 @@
+package com.smylay.hr;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.event.Observes;
+import javax.enterprise.event.TransactionPhase;
+import javax.inject.Inject;
+import javax.inject.Named;
+import org.jboss.logging.Logger;
+
+// The recipient resolver keeps the email addresses of the employees in each role, so emails to every manager can be
+// addressed without reading the employee table each time.
+// The addresses of a role are read once, using the index on role, and kept until an employee is added or has their
+// role or email address changed, or employees are imported.
+// "Named" enables beans to be injected into each other which allows them to communicate between each other.
+// "ApplicationScoped" details how long the state is saved. in this case for the duration that the application is running.
+@Named
+@ApplicationScoped
+public class RecipientResolver implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    // Here I inject different beans. DBFacade handles database interaction. Logger enables you to output messages to the screen.
+    @Inject
+    DBFacade dbFacade;
+    @Inject
+    Logger log;
+
+    // The unchangeable list of addresses for each role that has been looked up.
+    private final transient Map<Integer, List<String>> addressesByRole = new ConcurrentHashMap<Integer, List<String>>();
+
+    /**
+     * This method returns the email addresses of everyone who can approve absence requests (managers and superusers).
+     *
+     * @param none
+     *
+     * @return an unmodifiable list of addresses.
+     */
+    public List<String> getApproverAddresses() {
+        List<String> managers = getAddresses(Constants.ROLE_MANAGER_ID);
+        List<String> superusers = getAddresses(Constants.ROLE_SUPERUSER_ID);
+        List<String> approvers = new ArrayList<String>(managers.size() + superusers.size());
+        approvers.addAll(managers);
+        approvers.addAll(superusers);
+        return Collections.unmodifiableList(approvers);
+    }
+
+    /**
+     * This method returns the email addresses of the employees with a role.
+     *
+     * @param roleid the id of the role.
+     *
+     * @return an unmodifiable list of addresses.
+     */
+    public List<String> getAddresses(int roleid) {
+        List<String> addresses = addressesByRole.get(roleid);
+        if (addresses == null) {
+            addresses = Collections.unmodifiableList(new ArrayList<String>(dbFacade.getEmailsInRole(roleid)));
+            addressesByRole.put(roleid, addresses);
+            log.info("Recipient resolver loaded " + addresses.size() + " addresses for role " + roleid);
+        }
+        return addresses;
+    }
+
+    /**
+     * This method throws away every list of addresses so they are read again the next time they are needed.
+     *
+     * @param none
+     *
+     * @return none
+     */
+    public void invalidate() {
+        addressesByRole.clear();
+    }
+
+    /**
+     * This method is called once an employee has been added, or had their role or email address changed, and the
+     * change committed to the database.
+     *
+     * @param event the change that was made.
+     *
+     * @return none
+     */
+    public void onEmployeeChanged(@Observes(during = TransactionPhase.AFTER_SUCCESS) EmployeeChangedEvent event) {
+        // The employee may have left one role and joined another, so every role is read again.
+        invalidate();
+    }
+}
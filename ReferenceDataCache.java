@@ -0,0 +1,214 @@
+package com.smylay.hr;
+
+import com.smylay.hr.model.Holidays;
+import com.smylay.hr.model.Reason;
+import com.smylay.hr.model.Role;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.event.Observes;
+import javax.enterprise.event.TransactionPhase;
+import javax.inject.Inject;
+import javax.inject.Named;
+import org.jboss.logging.Logger;
+
+// The reference data cache keeps a copy of the small tables that hardly ever change (reasons, roles and holidays) so
+// the web pages do not have to ask the database for them every time they are shown.
+// The copies are plain detached objects, loaded once and shared by every user. When one of the tables is changed the
+// version number goes up and the copies are loaded again the next time they are needed.
+// "Named" enables beans to be injected into each other which allows them to communicate between each other.
+// "ApplicationScoped" details how long the state is saved. in this case for the duration that the application is running.
+@Named
+@ApplicationScoped
+public class ReferenceDataCache implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    // Here I inject different beans. DBFacade handles database interaction. Logger enables you to output messages to the screen.
+    @Inject
+    DBFacade dbFacade;
+    @Inject
+    Logger log;
+
+    private final AtomicLong version = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    // The current copy of the tables. It is replaced as a whole so readers never need a lock.
+    private transient volatile Snapshot snapshot;
+
+    /**
+     * This method returns all possible reasons for absence. e.g. holiday.
+     *
+     * @param none
+     *
+     * @return an unmodifiable list of reasons.
+     */
+    public List<Reason> getReasons() {
+        return getSnapshot().reasons;
+    }
+
+    /**
+     * This method returns a reason given its id.
+     *
+     * @param id the id of the reason.
+     *
+     * @return the reason, or null if there is no reason with that id.
+     */
+    public Reason getReason(Integer id) {
+        return getSnapshot().reasonsById.get(id);
+    }
+
+    /**
+     * This method returns all the roles.
+     *
+     * @param none
+     *
+     * @return an unmodifiable list of roles.
+     */
+    public List<Role> getRoles() {
+        return getSnapshot().roles;
+    }
+
+    /**
+     * This method returns a role given its id.
+     *
+     * @param id the id of the role.
+     *
+     * @return the role, or null if there is no role with that id.
+     */
+    public Role getRole(Integer id) {
+        return getSnapshot().rolesById.get(id);
+    }
+
+    /**
+     * This method returns all the holidays for all workers.
+     *
+     * @param none
+     *
+     * @return an unmodifiable list of holidays.
+     */
+    public List<Holidays> getHolidays() {
+        return getSnapshot().holidays;
+    }
+
+    /**
+     * This method throws away the cached tables so they are loaded again the next time they are needed.
+     *
+     * @param none
+     *
+     * @return none
+     */
+    public void invalidate() {
+        version.incrementAndGet();
+        snapshot = null;
+    }
+
+    /**
+     * This method is called once a change to one of the reference tables has been committed to the database.
+     *
+     * @param event the change that was made.
+     *
+     * @return none
+     */
+    public void onReferenceDataChanged(@Observes(during = TransactionPhase.AFTER_SUCCESS) ReferenceDataChangedEvent event) {
+        log.info("Reference data changed: " + event.getType().getSimpleName());
+        invalidate();
+    }
+
+    /**
+     * This method returns the current copy of the tables, loading them from the database if needed.
+     *
+     * @param none
+     *
+     * @return the snapshot.
+     */
+    private Snapshot getSnapshot() {
+        Snapshot current = snapshot;
+        if (current != null) {
+            hits.incrementAndGet();
+            return current;
+        }
+        misses.incrementAndGet();
+
+        // Remembers the version before loading. If the tables are changed while we are loading, this copy could
+        // already be out of date so it is used for this call but not kept.
+        long loadingVersion = version.get();
+        current = new Snapshot(dbFacade.getAllReasons(), dbFacade.getAllRoles(), dbFacade.getAllHolidays());
+        synchronized (this) {
+            if (version.get() == loadingVersion) {
+                snapshot = current;
+            }
+        }
+        log.info("Reference data loaded, version " + loadingVersion);
+        return current;
+    }
+
+    //////// Getters ////////
+    /**
+     * @return the version of the reference data, which goes up every time it is changed.
+     */
+    public long getVersion() {
+        return version.get();
+    }
+
+    /**
+     * @return the number of times the reference data was served from the cache.
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * @return the number of times the reference data had to be loaded from the database.
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    // An unchangeable copy of the reference tables.
+    private static class Snapshot {
+
+        private final List<Reason> reasons;
+        private final Map<Integer, Reason> reasonsById = new HashMap<Integer, Reason>();
+        private final List<Role> roles;
+        private final Map<Integer, Role> rolesById = new HashMap<Integer, Role>();
+        private final List<Holidays> holidays;
+
+        Snapshot(List<Reason> reasonEntities, List<Role> roleEntities, List<Holidays> holidayEntities) {
+            // Copies are made so the cache never holds on to the entities' collections of absences and employees.
+            List<Reason> reasonList = new ArrayList<Reason>();
+            for (Reason thisReason : reasonEntities) {
+                Reason copy = new Reason(thisReason.getReasonid(), thisReason.getName());
+                reasonList.add(copy);
+                reasonsById.put(copy.getReasonid(), copy);
+            }
+            reasons = Collections.unmodifiableList(reasonList);
+
+            List<Role> roleList = new ArrayList<Role>();
+            for (Role thisRole : roleEntities) {
+                Role copy = new Role(thisRole.getRoleid(), thisRole.getName());
+                roleList.add(copy);
+                rolesById.put(copy.getRoleid(), copy);
+            }
+            roles = Collections.unmodifiableList(roleList);
+
+            List<Holidays> holidayList = new ArrayList<Holidays>();
+            for (Holidays thisHoliday : holidayEntities) {
+                Holidays copy = new Holidays(thisHoliday.getHolidayid());
+                copy.setName(thisHoliday.getName());
+                if (thisHoliday.getDate() != null) {
+                    copy.setDate(new Date(thisHoliday.getDate().getTime()));
+                }
+                holidayList.add(copy);
+            }
+            holidays = Collections.unmodifiableList(holidayList);
+        }
+    }
+}
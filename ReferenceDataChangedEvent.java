@@ -0,0 +1,22 @@
+package com.smylay.hr;
+
+// This event is fired by DBFacade whenever one of the reference tables (reason, role or holidays) is changed.
+// Beans that keep copies of those tables observe it so they know to load them again.
+public class ReferenceDataChangedEvent {
+
+    private final Class<?> type;
+
+    /**
+     * @param type the entity class of the table that was changed.
+     */
+    public ReferenceDataChangedEvent(Class<?> type) {
+        this.type = type;
+    }
+
+    /**
+     * @return the entity class of the table that was changed.
+     */
+    public Class<?> getType() {
+        return type;
+    }
+}
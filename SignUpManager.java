@@ -26,16 +26,18 @@ public class SignUpManager implements Serializable {
     private String confirmPassword;
     private String nextPage;
 
-    // Here I inject different beans. DBFacade handles database interaction.
+    // Here I inject different beans. DBFacade handles database interaction. ReferenceDataCache holds the roles.
     @Inject
     DBFacade dbFacade;
+    @Inject
+    ReferenceDataCache referenceDataCache;
 
     // init creates a new employee, sets the role employee, and sets password and confirmPassword to null.
     // "PostConstruct" means that this method runs straight after the construction of an instance of this class.
     @PostConstruct
     public void init() {
         newEmployee = new Employee();
-        Role role = (Role) dbFacade.getEntity(Role.class, Constants.ROLE_EMPLOYEE_ID);
+        Role role = referenceDataCache.getRole(Constants.ROLE_EMPLOYEE_ID);
         newEmployee.setRoleid(role);
         password = null;
         confirmPassword = null;
@@ -50,28 +52,45 @@ public class SignUpManager implements Serializable {
      */
     public void submitClicked() {
         // Checks if password matches confirmPassword
-        if (password.equals(confirmPassword)) {
+        if (!password.equals(confirmPassword)) {
+            // If password and confirmPassword do not match then an error shows, explaining this.
+            showError("Passwords do not match");
+            nextPage = null;
+        } else if (dbFacade.getUserByUsername(newEmployee.getUsername()) != null) {
+            // Usernames must be unique, so a username that is already taken is turned down.
+            showError("That username is already taken");
+            nextPage = null;
+        } else {
             // Sets various default values for a new employee, such as absence rating to zero. 
             newEmployee.setAbsenceRating(0);
             newEmployee.setDaysallowed(25);
             newEmployee.setNumOfAbsences(0);
-            // sets the new employee's password to the password they entered and saves the employee to the database.
-            newEmployee.setPassword(password);
+            // sets the new employee's password to a hash of the password they entered and saves the employee to the database.
+            newEmployee.setPassword(PasswordHasher.hash(password));
             dbFacade.saveEmployee(newEmployee);
+            // Clears the form so the saved employee and the passwords are not kept in the session.
+            init();
             // Redirects to the log-in screen.
             nextPage = "log-in-screen.xhtml?faces-redirect=true";
-        } else {
-            // If password and confirmPassword do not match then an error shows, explaining this.
-            FacesMessage message = new FacesMessage();
-            message.setSeverity(FacesMessage.SEVERITY_ERROR);
-            message.setSummary("Passwords do not match");
-            message.setDetail("Passwords do not match");
-            FacesContext.getCurrentInstance().addMessage(null, message);
-            nextPage = null;
         }
 
     }
 
+    /**
+     * This method shows an error message on the page.
+     *
+     * @param text the message to show.
+     *
+     * @return none
+     */
+    private void showError(String text) {
+        FacesMessage message = new FacesMessage();
+        message.setSeverity(FacesMessage.SEVERITY_ERROR);
+        message.setSummary(text);
+        message.setDetail(text);
+        FacesContext.getCurrentInstance().addMessage(null, message);
+    }
+
     //////// Getters and Setters ////////
     /**
      * @return the newEmployee
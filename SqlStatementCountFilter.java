@@ -0,0 +1,42 @@
+package com.smylay.hr;
+
+import java.io.IOException;
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.annotation.WebFilter;
+import javax.servlet.http.HttpServletRequest;
+import org.jboss.logging.Logger;
+
+// This filter logs how many SQL statements each page request ran, using the SQL statement counter.
+// The messages are logged at debug level, so they only show when debug logging is turned on for this class.
+// "WebFilter" sets which requests the filter runs for.
+@WebFilter(urlPatterns = {"*.xhtml", "/export/*"})
+public class SqlStatementCountFilter implements Filter {
+
+    private static final Logger log = Logger.getLogger(SqlStatementCountFilter.class);
+
+    @Override
+    public void init(FilterConfig filterConfig) throws ServletException {
+    }
+
+    @Override
+    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain) throws IOException, ServletException {
+        SqlStatementCounter.reset();
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            if (log.isDebugEnabled()) {
+                HttpServletRequest httpRequest = (HttpServletRequest) request;
+                log.debug(httpRequest.getMethod() + " " + httpRequest.getRequestURI() + " ran " + SqlStatementCounter.getCount() + " SQL statements");
+            }
+        }
+    }
+
+    @Override
+    public void destroy() {
+    }
+}
@@ -0,0 +1,44 @@
+package com.smylay.hr;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+// The SQL statement counter counts the SQL statements hibernate runs on the current thread, so the number of database
+// round trips each web request makes can be seen (see SqlStatementCountFilter).
+// It is registered with hibernate in persistence.xml:
+// <property name="hibernate.session_factory.statement_inspector" value="com.smylay.hr.SqlStatementCounter"/>
+public class SqlStatementCounter implements StatementInspector {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final ThreadLocal<int[]> COUNT = new ThreadLocal<int[]>() {
+        @Override
+        protected int[] initialValue() {
+            return new int[1];
+        }
+    };
+
+    @Override
+    public String inspect(String sql) {
+        COUNT.get()[0]++;
+        // The statement is not changed.
+        return sql;
+    }
+
+    /**
+     * This method sets the count for the current thread back to zero.
+     *
+     * @param none
+     *
+     * @return none
+     */
+    public static void reset() {
+        COUNT.get()[0] = 0;
+    }
+
+    /**
+     * @return the number of SQL statements run on the current thread since the last reset.
+     */
+    public static int getCount() {
+        return COUNT.get()[0];
+    }
+}
@@ -0,0 +1,46 @@
+package com.smylay.hr;
+
+import java.io.Serializable;
+import java.util.Date;
+
+// A small value object holding how many people in a team are off on a day and how many are still available.
+public class StaffingDay implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int day;
+    private final int absent;
+    private final int available;
+
+    /**
+     * @param day the day as an epoch day.
+     * @param absent the number of people off.
+     * @param available the number of people still available.
+     */
+    public StaffingDay(int day, int absent, int available) {
+        this.day = day;
+        this.absent = absent;
+        this.available = available;
+    }
+
+    /**
+     * @return the day.
+     */
+    public Date getDate() {
+        return Utils.fromEpochDay(day).toDate();
+    }
+
+    /**
+     * @return the number of people off.
+     */
+    public int getAbsent() {
+        return absent;
+    }
+
+    /**
+     * @return the number of people still available.
+     */
+    public int getAvailable() {
+        return available;
+    }
+}
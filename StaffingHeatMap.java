@@ -0,0 +1,260 @@
+package com.smylay.hr;
+
+import com.smylay.hr.model.Absence;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.event.Observes;
+import javax.enterprise.event.TransactionPhase;
+import javax.inject.Inject;
+import javax.inject.Named;
+import org.jboss.logging.Logger;
+import org.joda.time.LocalDate;
+
+// The staffing heat map keeps, for every role and every day, the number of employees with that role who are off, and
+// the number of employees with each role.
+// Each role has an array of counts for each year (one entry per day of the year), so the counts for a whole year can be
+// read with one copy of an array rather than a query per day. An employee is off on any day covered by one of their
+// absences, whether it has been approved or only requested, the same as the staffing on the approval page (see
+// AbsenceIntervalIndex). Someone with two absences on the same day is only counted once.
+// The counts are built once from the database and then kept up to date whenever an absence is saved or deleted.
+// The headcounts are read with one query and kept until an employee is added, changes role or is imported.
+// "Named" enables beans to be injected into each other which allows them to communicate between each other.
+// "ApplicationScoped" details how long the state is saved. in this case for the duration that the application is running.
+@Named
+@ApplicationScoped
+public class StaffingHeatMap implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    // Here I inject different beans. DBFacade handles database interaction. Logger enables you to output messages to the screen.
+    @Inject
+    DBFacade dbFacade;
+    @Inject
+    Logger log;
+
+    // The counts for each (role, year), the days each absence added to them so they can be taken off again, and the
+    // absences of each employee so a day is only counted once for each employee.
+    // All three are only changed while holding this bean's lock.
+    private transient Map<Long, int[]> counts;
+    private transient Map<Integer, Contribution> contributions;
+    private transient Map<Integer, List<Contribution>> byEmployee;
+
+    // The number of employees with each role. It is replaced as a whole, never changed.
+    private transient volatile Map<Integer, Integer> headcounts;
+
+    /**
+     * This method returns the number of employees with a role who are off on each day of a year.
+     *
+     * @param roleid the id of the role.
+     * @param year the year.
+     *
+     * @return a copy of the counts, where entry 0 is the 1st of January.
+     */
+    public synchronized int[] getYear(int roleid, int year) {
+        if (counts == null) {
+            rebuild();
+        }
+        int[] found = counts.get(key(roleid, year));
+        return found == null ? new int[daysInYear(year)] : found.clone();
+    }
+
+    /**
+     * This method returns the number of employees with a role.
+     *
+     * @param roleid the id of the role.
+     *
+     * @return the number of employees.
+     */
+    public int getHeadcount(int roleid) {
+        Map<Integer, Integer> current = headcounts;
+        if (current == null) {
+            synchronized (this) {
+                current = headcounts;
+                if (current == null) {
+                    current = loadHeadcounts();
+                    headcounts = current;
+                }
+            }
+        }
+        Integer found = current.get(roleid);
+        return found == null ? 0 : found;
+    }
+
+    /**
+     * This method throws away the counts and builds them again from the absence table.
+     *
+     * @param none
+     *
+     * @return none
+     */
+    public synchronized void rebuild() {
+        long started = System.currentTimeMillis();
+        counts = new HashMap<Long, int[]>();
+        contributions = new HashMap<Integer, Contribution>();
+        byEmployee = new HashMap<Integer, List<Contribution>>();
+        List<AbsenceView> absences = dbFacade.getAllAbsenceViews();
+        for (AbsenceView thisAbsence : absences) {
+            add(new Contribution(thisAbsence.getAbsenceid(), thisAbsence.getEmployeeid(), thisAbsence.getRoleid(),
+                    thisAbsence.getStartDay(), thisAbsence.getEndDay()));
+        }
+        log.info("Staffing heat map built from " + absences.size() + " absences in " + (System.currentTimeMillis() - started) + "ms");
+    }
+
+    /**
+     * This method throws away the counts and headcounts so they are rebuilt the next time they are needed.
+     *
+     * @param none
+     *
+     * @return none
+     */
+    public synchronized void invalidate() {
+        counts = null;
+        contributions = null;
+        byEmployee = null;
+        headcounts = null;
+    }
+
+    /**
+     * This method is called once an employee has been added or changed and the change committed to the database. A new
+     * employee or one who moves to another role changes the headcounts, so they are read again when next needed. An
+     * employee who moves to another role also takes their absences with them, so the counts are built again too.
+     *
+     * @param event the change that was made.
+     *
+     * @return none
+     */
+    public synchronized void onEmployeeChanged(@Observes(during = TransactionPhase.AFTER_SUCCESS) EmployeeChangedEvent event) {
+        headcounts = null;
+        if (event.isRoleChanged()) {
+            counts = null;
+            contributions = null;
+            byEmployee = null;
+        }
+    }
+
+    /**
+     * This method is called once an absence has been saved or deleted and the change committed to the database. The
+     * absence's old days are taken off and its new days added.
+     *
+     * @param event the change that was made.
+     *
+     * @return none
+     */
+    public synchronized void onAbsenceChanged(@Observes(during = TransactionPhase.AFTER_SUCCESS) AbsenceChangedEvent event) {
+        if (counts == null) {
+            // Nothing has been built yet, the change will be included when it is.
+            return;
+        }
+        Absence absence = event.getAbsence();
+        remove(absence.getAbsenceid());
+        if (!event.isDeleted()) {
+            add(new Contribution(absence.getAbsenceid(), absence.getEmployeeid().getEmployeeid(),
+                    absence.getEmployeeid().getRoleid().getRoleid(),
+                    Utils.toEpochDay(absence.getStartdate()), Utils.toEpochDay(absence.getEnddate())));
+        }
+    }
+
+    private void add(Contribution added) {
+        List<Contribution> absences = byEmployee.get(added.employeeid);
+        if (absences == null) {
+            absences = new ArrayList<Contribution>();
+            byEmployee.put(added.employeeid, absences);
+        }
+        // The days are counted before the absence is added, so days the employee is already off are left alone.
+        change(added, absences, 1);
+        absences.add(added);
+        contributions.put(added.absenceid, added);
+    }
+
+    private void remove(int absenceid) {
+        Contribution old = contributions.remove(absenceid);
+        if (old != null) {
+            List<Contribution> absences = byEmployee.get(old.employeeid);
+            absences.remove(old);
+            // The days are taken off after the absence is removed, so days the employee is still off are left alone.
+            change(old, absences, -1);
+            if (absences.isEmpty()) {
+                byEmployee.remove(old.employeeid);
+            }
+        }
+    }
+
+    // Adds an amount to the count of every day of an absence that none of the employee's other absences cover, one year
+    // at a time.
+    private void change(Contribution absence, List<Contribution> others, int amount) {
+        int day = absence.startDay;
+        while (day <= absence.endDay) {
+            LocalDate date = Utils.fromEpochDay(day);
+            int firstOfYear = day - (date.getDayOfYear() - 1);
+            long key = key(absence.roleid, date.getYear());
+            int[] year = counts.get(key);
+            if (year == null) {
+                year = new int[daysInYear(date.getYear())];
+                counts.put(key, year);
+            }
+            int last = Math.min(absence.endDay, firstOfYear + year.length - 1);
+            for (; day <= last; day++) {
+                if (!isCovered(others, day)) {
+                    year[day - firstOfYear] += amount;
+                }
+            }
+        }
+    }
+
+    // Checks whether any of an employee's absences covers a day.
+    private static boolean isCovered(List<Contribution> absences, int day) {
+        for (Contribution thisAbsence : absences) {
+            if (thisAbsence.startDay <= day && thisAbsence.endDay >= day) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * This method reads the number of employees with each role from the database.
+     *
+     * @param none
+     *
+     * @return the headcount of each role.
+     */
+    private Map<Integer, Integer> loadHeadcounts() {
+        Map<Integer, Integer> loaded = new HashMap<Integer, Integer>();
+        for (Object[] row : dbFacade.countEmployeesByRole()) {
+            loaded.put((Integer) row[0], ((Number) row[1]).intValue());
+        }
+        log.info("Staffing headcounts read for " + loaded.size() + " roles");
+        return loaded;
+    }
+
+    private static int daysInYear(int year) {
+        return new LocalDate(year, 1, 1).dayOfYear().getMaximumValue();
+    }
+
+    // Packs a role id and year into one long so no key objects are needed.
+    private static long key(int roleid, int year) {
+        return ((long) roleid << 32) | (year & 0xFFFFFFFFL);
+    }
+
+    // The days one absence added to the counts.
+    private static class Contribution {
+
+        private final int absenceid;
+        private final int employeeid;
+        private final int roleid;
+        private final int startDay;
+        private final int endDay;
+
+        Contribution(int absenceid, int employeeid, int roleid, int startDay, int endDay) {
+            this.absenceid = absenceid;
+            this.employeeid = employeeid;
+            this.roleid = roleid;
+            this.startDay = startDay;
+            this.endDay = endDay;
+        }
+    }
+}
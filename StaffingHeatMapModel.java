@@ -0,0 +1,155 @@
+package com.smylay.hr;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import org.joda.time.LocalDate;
+
+// The model shown by the staffing heat map on the dashboard. It holds one row for each role, and each row holds the
+// number of people in that role who are off on each day of the year. PrimeFaces has no heat map chart so the page draws
+// the cells itself, colouring each one by its level.
+public class StaffingHeatMapModel implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int year;
+    private final List<Row> rows = new ArrayList<Row>();
+
+    /**
+     * @param year the year the model covers.
+     */
+    public StaffingHeatMapModel(int year) {
+        this.year = year;
+    }
+
+    /**
+     * This method adds a row to the model.
+     *
+     * @param roleName the name of the role.
+     * @param headcount the number of employees with the role.
+     * @param counts the number of employees off on each day of the year.
+     *
+     * @return none
+     */
+    public void addRow(String roleName, int headcount, int[] counts) {
+        rows.add(new Row(year, roleName, headcount, counts));
+    }
+
+    /**
+     * @return the year
+     */
+    public int getYear() {
+        return year;
+    }
+
+    /**
+     * @return the rows
+     */
+    public List<Row> getRows() {
+        return Collections.unmodifiableList(rows);
+    }
+
+    // One role's counts for the year.
+    public static class Row implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int firstDay;
+        private final String roleName;
+        private final int headcount;
+        private final int[] counts;
+
+        Row(int year, String roleName, int headcount, int[] counts) {
+            this.firstDay = Utils.toEpochDay(new LocalDate(year, 1, 1));
+            this.roleName = roleName;
+            this.headcount = headcount;
+            this.counts = counts;
+        }
+
+        /**
+         * @return the roleName
+         */
+        public String getRoleName() {
+            return roleName;
+        }
+
+        /**
+         * @return the headcount
+         */
+        public int getHeadcount() {
+            return headcount;
+        }
+
+        /**
+         * This method returns a cell for each day of the year. The cells are made when they are asked for so only the
+         * counts are kept in the session.
+         *
+         * @param none
+         *
+         * @return the cells.
+         */
+        public List<Cell> getCells() {
+            List<Cell> cells = new ArrayList<Cell>(counts.length);
+            for (int i = 0; i < counts.length; i++) {
+                cells.add(new Cell(firstDay + i, counts[i], level(counts[i])));
+            }
+            return cells;
+        }
+
+        // Works out how busy a day is from the share of the role that is off: 0 is nobody off and 4 is half or more.
+        private int level(int count) {
+            if (count <= 0) {
+                return 0;
+            }
+            if (headcount <= 0 || count * 2 >= headcount) {
+                return 4;
+            }
+            if (count * 4 >= headcount) {
+                return 3;
+            }
+            if (count * 10 >= headcount) {
+                return 2;
+            }
+            return 1;
+        }
+    }
+
+    // One day in a row.
+    public static class Cell implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int day;
+        private final int count;
+        private final int level;
+
+        Cell(int day, int count, int level) {
+            this.day = day;
+            this.count = count;
+            this.level = level;
+        }
+
+        /**
+         * @return the date
+         */
+        public Date getDate() {
+            return Utils.fromEpochDay(day).toDate();
+        }
+
+        /**
+         * @return the number of people off
+         */
+        public int getCount() {
+            return count;
+        }
+
+        /**
+         * @return the level, from 0 (nobody off) to 4 (half or more off)
+         */
+        public int getLevel() {
+            return level;
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.smylay.hr;
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import javax.enterprise.context.ApplicationScoped;
+import javax.faces.push.Push;
+import javax.faces.push.PushContext;
+import javax.inject.Inject;
+import javax.inject.Named;
+import org.jboss.logging.Logger;
+
+// The timeline push tells every open dashboard when an absence has changed, over the "timeline" websocket channel.
+// Only the id of the absence is sent. Each dashboard then asks for that one event from the absence timeline store, so
+// nobody has to reload the dashboard (and nothing is read from the database) to see new or approved requests.
+// "Named" enables beans to be injected into each other which allows them to communicate between each other.
+// "ApplicationScoped" details how long the state is saved. in this case for the duration that the application is running.
+@Named
+@ApplicationScoped
+public class TimelinePush implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    // Here I inject different beans. The push context sends messages to the dashboards listening on the channel.
+    // Logger enables you to output messages to the screen.
+    @Inject
+    @Push(channel = "timeline")
+    PushContext timelineChannel;
+    @Inject
+    Logger log;
+
+    /**
+     * This method tells the dashboards that an absence has been saved or deleted.
+     *
+     * @param absenceid the id of the absence that changed.
+     *
+     * @return none
+     */
+    public void absenceChanged(int absenceid) {
+        Map<String, Object> message = new HashMap<String, Object>();
+        message.put("absenceid", absenceid);
+        send(message);
+    }
+
+    /**
+     * This method tells the dashboards to rebuild their whole timeline, for changes that were not made one absence at a
+     * time (such as an import).
+     *
+     * @param none
+     *
+     * @return none
+     */
+    public void reloadAll() {
+        send(Collections.<String, Object>emptyMap());
+    }
+
+    private void send(Map<String, Object> message) {
+        try {
+            timelineChannel.send(message);
+        } catch (RuntimeException e) {
+            // The change has already been committed, so a dashboard that misses it just catches up the next time it is shown.
+            log.warn("Could not push timeline change " + message + ": " + e.getMessage());
+        }
+    }
+}
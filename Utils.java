@@ -1,85 +1,59 @@
 package com.smylay.hr;
 
-import com.smylay.hr.model.Holidays;
 import java.util.Date;
-import java.util.List;
-import org.joda.time.DateTime;
-import org.joda.time.DateTimeConstants;
+import org.joda.time.Days;
 import org.joda.time.LocalDate;
 
 // Utils is a class with various utility methods.
 public class Utils {
 
+    // The first day that epoch days are counted from (1st January 1970).
+    private static final LocalDate EPOCH = new LocalDate(1970, 1, 1);
+
     /**
-     * This method returns the number of days between two give dates.
+     * This method converts a date into an epoch day (the number of days since 1st January 1970). Epoch days are plain
+     * ints so they are much cheaper to store and compare than Date objects.
      *
-     * @param startdate the first day of the period of days you want to count.
-     * @param enddate the last day of the period of days you want to count.
-     * @param dbFacade pass in the DBFacade bean.
+     * @param date the date to convert.
      *
-     * @return the number of days between two given dates.
+     * @return the epoch day of the given date.
      */
-    public static Integer numDaysDifference(Date startdate, Date enddate, DBFacade dbFacade) {
-        DateTime enddatetime = new DateTime(enddate);
-        DateTime startdatetime = new DateTime(startdate);
-        Integer i = 0;
-        DateTime thisDateTime = startdatetime;
-        // A while loop used to count the number of workdays using the counmter i.
-        while (!thisDateTime.isAfter(enddatetime)) {
-            if (isWorkday(thisDateTime, dbFacade)) {
-                i++;
-            }
-            thisDateTime = thisDateTime.plusDays(1);
-        }
-        // returns the number of days.
-        return i;
+    public static int toEpochDay(Date date) {
+        return toEpochDay(new LocalDate(date));
     }
 
     /**
-     * This method checks to see if a given day is a workday or not.
+     * This method converts a local date into an epoch day.
      *
-     * @param day the day you want to check.
-     * @param dbFacade pass in the DBFacade bean.
+     * @param date the date to convert.
      *
-     * @return Boolean is it a work day or not?
+     * @return the epoch day of the given date.
      */
-    private static Boolean isWorkday(DateTime day, DBFacade dbFacade) {
-
-        if (day.getDayOfWeek() == DateTimeConstants.SATURDAY || day.getDayOfWeek() == DateTimeConstants.SUNDAY) {
-            // if its a weekend return false
-            return false;
-
-        } else if (isBankHoliday(day, dbFacade)) {
-            // if it is a holiday for all workers return false
-            return false;
+    public static int toEpochDay(LocalDate date) {
+        return Days.daysBetween(EPOCH, date).getDays();
+    }
 
-        } else {
-            // if neither of the above then return true
-            return true;
-        }
+    /**
+     * This method converts an epoch day back into a local date.
+     *
+     * @param epochDay the number of days since 1st January 1970.
+     *
+     * @return the local date of the given epoch day.
+     */
+    public static LocalDate fromEpochDay(int epochDay) {
+        return EPOCH.plusDays(epochDay);
     }
 
     /**
-     * This method checks to see if a given day is a holiday for all workers or not.
+     * This method checks whether an epoch day falls on a weekend. 1st January 1970 was a Thursday.
      *
-     * @param day the day you want to check
-     * @param dbFacade pass in the DBFacade bean.
+     * @param epochDay the day you want to check.
      *
-     * @return Boolean is it a holiday?
+     * @return Boolean is it a Saturday or a Sunday?
      */
-    private static Boolean isBankHoliday(DateTime day, DBFacade dbFacade) {
-        // retrieves a public list of holidays for the forseen future.
-        List<Holidays> holidates = dbFacade.getAllHolidays();
-        LocalDate dayDate = new LocalDate(day);
-        // checks if the day provided is a holiday using a for and an if loop.
-        for (Holidays thisHoliday : holidates) {
-            LocalDate thisDayDate = new LocalDate(thisHoliday.getDate());
-            if (thisDayDate.equals(dayDate)) {
-                //if it is a holiday return true
-                return true;
-            }
-        }
-        // if its not a holiday return false.
-        return false;
+    public static boolean isWeekend(int epochDay) {
+        // Monday = 0 ... Sunday = 6
+        int dayOfWeek = Math.floorMod(epochDay + 3, 7);
+        return dayOfWeek >= 5;
     }
 }
@@ -0,0 +1,161 @@
+package com.smylay.hr;
+
+import com.smylay.hr.model.Holidays;
+import java.io.Serializable;
+import java.util.BitSet;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import javax.inject.Named;
+import org.jboss.logging.Logger;
+import org.joda.time.LocalDate;
+
+// The workday calendar works out how many working days there are between two dates.
+// The holidays are taken from the reference data cache and stored as a bitset for each year, and each year keeps a
+// running total of working days so the number of working days in any range can be found with a subtraction.
+// The index is only rebuilt when the version of the reference data changes.
+// "Named" enables beans to be injected into each other which allows them to communicate between each other.
+// "ApplicationScoped" details how long the state is saved. in this case for the duration that the application is running.
+@Named
+@ApplicationScoped
+public class WorkdayCalendar implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    // Here I inject different beans. ReferenceDataCache holds the holidays. Logger enables you to output messages to the screen.
+    @Inject
+    ReferenceDataCache referenceDataCache;
+    @Inject
+    Logger log;
+
+    // The current holiday index. It is replaced as a whole when the holidays are reloaded so readers never need a lock.
+    private transient volatile HolidayIndex index;
+
+    /**
+     * This method returns the number of working days between two given dates. Weekends and holidays for all workers
+     * are not counted.
+     *
+     * @param startdate the first day of the period of days you want to count.
+     * @param enddate the last day of the period of days you want to count.
+     *
+     * @return the number of working days between the two dates (both days included).
+     */
+    public int workingDaysBetween(Date startdate, Date enddate) {
+        return workingDaysBetween(Utils.toEpochDay(startdate), Utils.toEpochDay(enddate));
+    }
+
+    /**
+     * This method returns the number of working days between two epoch days.
+     *
+     * @param firstDay the first epoch day of the period.
+     * @param lastDay the last epoch day of the period.
+     *
+     * @return the number of working days between the two days (both days included).
+     */
+    public int workingDaysBetween(int firstDay, int lastDay) {
+        if (lastDay < firstDay) {
+            return 0;
+        }
+        HolidayIndex current = getIndex();
+        int firstYear = Utils.fromEpochDay(firstDay).getYear();
+        int lastYear = Utils.fromEpochDay(lastDay).getYear();
+
+        // Adds up the part of each year the period covers (usually just one or two years).
+        int total = 0;
+        for (int year = firstYear; year <= lastYear; year++) {
+            YearIndex yearIndex = current.getYear(year);
+            int from = Math.max(firstDay, yearIndex.firstDay);
+            int to = Math.min(lastDay, yearIndex.firstDay + yearIndex.length - 1);
+            total += yearIndex.workingDaysBefore[to - yearIndex.firstDay + 1] - yearIndex.workingDaysBefore[from - yearIndex.firstDay];
+        }
+        return total;
+    }
+
+    /**
+     * This method checks to see if a given day is a workday or not.
+     *
+     * @param day the day you want to check.
+     *
+     * @return Boolean is it a work day or not?
+     */
+    public boolean isWorkday(Date day) {
+        int epochDay = Utils.toEpochDay(day);
+        return workingDaysBetween(epochDay, epochDay) == 1;
+    }
+
+    /**
+     * This method returns the holiday index, building it again if the holidays have changed since it was built.
+     *
+     * @param none
+     *
+     * @return the holiday index.
+     */
+    private HolidayIndex getIndex() {
+        HolidayIndex current = index;
+        long version = referenceDataCache.getVersion();
+        if (current == null || current.version != version) {
+            current = new HolidayIndex(version, referenceDataCache.getHolidays());
+            index = current;
+            log.info("Workday calendar built for reference data version " + version);
+        }
+        return current;
+    }
+
+    // Holds a bitset of holidays for each year, and the working day totals for each year once they have been worked out.
+    private static class HolidayIndex {
+
+        private final long version;
+        private final Map<Integer, BitSet> holidaysByYear = new HashMap<Integer, BitSet>();
+        private final Map<Integer, YearIndex> years = new ConcurrentHashMap<Integer, YearIndex>();
+
+        HolidayIndex(long version, List<Holidays> holidays) {
+            this.version = version;
+            for (Holidays thisHoliday : holidays) {
+                if (thisHoliday.getDate() == null) {
+                    continue;
+                }
+                LocalDate date = new LocalDate(thisHoliday.getDate());
+                BitSet bits = holidaysByYear.get(date.getYear());
+                if (bits == null) {
+                    bits = new BitSet(366);
+                    holidaysByYear.put(date.getYear(), bits);
+                }
+                bits.set(date.getDayOfYear() - 1);
+            }
+        }
+
+        YearIndex getYear(int year) {
+            YearIndex yearIndex = years.get(year);
+            if (yearIndex == null) {
+                BitSet holidays = holidaysByYear.get(year);
+                yearIndex = new YearIndex(year, holidays != null ? holidays : new BitSet());
+                years.put(year, yearIndex);
+            }
+            return yearIndex;
+        }
+    }
+
+    // Holds the running total of working days for a single year.
+    private static class YearIndex {
+
+        private final int firstDay;
+        private final int length;
+        // workingDaysBefore[i] is the number of working days from the first day of the year up to (not including) day i.
+        private final int[] workingDaysBefore;
+
+        YearIndex(int year, BitSet holidays) {
+            LocalDate firstOfYear = new LocalDate(year, 1, 1);
+            firstDay = Utils.toEpochDay(firstOfYear);
+            length = firstOfYear.dayOfYear().getMaximumValue();
+            workingDaysBefore = new int[length + 1];
+            for (int i = 0; i < length; i++) {
+                boolean working = !Utils.isWeekend(firstDay + i) && !holidays.get(i);
+                workingDaysBefore[i + 1] = workingDaysBefore[i] + (working ? 1 : 0);
+            }
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.smylay.hr;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+// Writes an export as an Excel (XLSX) workbook with a single sheet.
+// An XLSX file is a zip of XML files. The small fixed files are written first and the sheet is written last, one row at
+// a time, so the rows are streamed out rather than built up in memory. Text is written as inline strings so no shared
+// string table has to be kept. Nothing is written until the first row, so the caller can still set response headers.
+public class XlsxExportWriter extends ExportWriter {
+
+    private final ZipOutputStream zip;
+    private Writer sheet;
+    private int rowNumber;
+
+    /**
+     * @param out the stream to write to.
+     */
+    public XlsxExportWriter(OutputStream out) {
+        zip = new ZipOutputStream(out, StandardCharsets.UTF_8);
+    }
+
+    // Writes the fixed files and opens the sheet, if that has not been done yet.
+    private void start() throws IOException {
+        if (sheet != null) {
+            return;
+        }
+        writeEntry("[Content_Types].xml", "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>"
+                + "<Types xmlns=\"http://schemas.openxmlformats.org/package/2006/content-types\">"
+                + "<Default Extension=\"rels\" ContentType=\"application/vnd.openxmlformats-package.relationships+xml\"/>"
+                + "<Default Extension=\"xml\" ContentType=\"application/xml\"/>"
+                + "<Override PartName=\"/xl/workbook.xml\" ContentType=\"application/vnd.openxmlformats-officedocument.spreadsheetml.sheet.main+xml\"/>"
+                + "<Override PartName=\"/xl/worksheets/sheet1.xml\" ContentType=\"application/vnd.openxmlformats-officedocument.spreadsheetml.worksheet+xml\"/>"
+                + "</Types>");
+        writeEntry("_rels/.rels", "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>"
+                + "<Relationships xmlns=\"http://schemas.openxmlformats.org/package/2006/relationships\">"
+                + "<Relationship Id=\"rId1\" Type=\"http://schemas.openxmlformats.org/officeDocument/2006/relationships/officeDocument\" Target=\"xl/workbook.xml\"/>"
+                + "</Relationships>");
+        writeEntry("xl/workbook.xml", "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>"
+                + "<workbook xmlns=\"http://schemas.openxmlformats.org/spreadsheetml/2006/main\" xmlns:r=\"http://schemas.openxmlformats.org/officeDocument/2006/relationships\">"
+                + "<sheets><sheet name=\"Absences\" sheetId=\"1\" r:id=\"rId1\"/></sheets>"
+                + "</workbook>");
+        writeEntry("xl/_rels/workbook.xml.rels", "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>"
+                + "<Relationships xmlns=\"http://schemas.openxmlformats.org/package/2006/relationships\">"
+                + "<Relationship Id=\"rId1\" Type=\"http://schemas.openxmlformats.org/officeDocument/2006/relationships/worksheet\" Target=\"worksheets/sheet1.xml\"/>"
+                + "</Relationships>");
+
+        // The sheet stays open until finish is called.
+        zip.putNextEntry(new ZipEntry("xl/worksheets/sheet1.xml"));
+        sheet = new BufferedWriter(new OutputStreamWriter(zip, StandardCharsets.UTF_8));
+        sheet.write("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>"
+                + "<worksheet xmlns=\"http://schemas.openxmlformats.org/spreadsheetml/2006/main\"><sheetData>");
+    }
+
+    @Override
+    public String getContentType() {
+        return "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet";
+    }
+
+    @Override
+    public String getExtension() {
+        return "xlsx";
+    }
+
+    @Override
+    public void writeRow(Object... values) throws IOException {
+        start();
+        rowNumber++;
+        sheet.write("<row r=\"" + rowNumber + "\">");
+        for (Object value : values) {
+            if (value instanceof Number) {
+                sheet.write("<c><v>" + value + "</v></c>");
+            } else {
+                sheet.write("<c t=\"inlineStr\"><is><t>");
+                sheet.write(escape(format(value)));
+                sheet.write("</t></is></c>");
+            }
+        }
+        sheet.write("</row>");
+    }
+
+    @Override
+    public void flush() throws IOException {
+        if (sheet != null) {
+            sheet.flush();
+            zip.flush();
+        }
+    }
+
+    @Override
+    public void finish() throws IOException {
+        start();
+        sheet.write("</sheetData></worksheet>");
+        sheet.flush();
+        zip.closeEntry();
+        // Finishes the zip without closing the stream underneath it.
+        zip.finish();
+        zip.flush();
+    }
+
+    private void writeEntry(String name, String content) throws IOException {
+        zip.putNextEntry(new ZipEntry(name));
+        zip.write(content.getBytes(StandardCharsets.UTF_8));
+        zip.closeEntry();
+    }
+
+    // Escapes the characters that have a special meaning in XML.
+    private static String escape(String text) {
+        StringBuilder escaped = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '&':
+                    escaped.append("&amp;");
+                    break;
+                case '<':
+                    escaped.append("&lt;");
+                    break;
+                case '>':
+                    escaped.append("&gt;");
+                    break;
+                case '"':
+                    escaped.append("&quot;");
+                    break;
+                default:
+                    // Control characters are not allowed in XML, apart from tabs and line breaks.
+                    if (c >= 0x20 || c == '\t' || c == '\n' || c == '\r') {
+                        escaped.append(c);
+                    }
+            }
+        }
+        return escaped.toString();
+    }
+}